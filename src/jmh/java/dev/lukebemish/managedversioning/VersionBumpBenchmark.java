@@ -0,0 +1,35 @@
+package dev.lukebemish.managedversioning;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBumpBenchmark {
+    @Param({"1.2.3", "1.2.3-beta.4", "1.2.3+build.5-alpha.6", "2.0.0-beta.7-1.20.1"})
+    public String version;
+
+    @Benchmark
+    public String bump() {
+        return Versions.bump(version);
+    }
+
+    @Benchmark
+    public String stripMetadata() {
+        return Versions.stripMetadata(version);
+    }
+}
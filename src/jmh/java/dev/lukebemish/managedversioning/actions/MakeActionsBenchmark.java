@@ -0,0 +1,71 @@
+package dev.lukebemish.managedversioning.actions;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MakeActionsBenchmark {
+    @Param({"10", "100"})
+    public int actions;
+
+    @Param({"10"})
+    public int jobsPerAction;
+
+    private final List<GitHubAction> gitHubActions = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Project project = ProjectBuilder.builder().build();
+        for (int i = 0; i < actions; i++) {
+            var action = project.getObjects().newInstance(GitHubAction.class, "action_" + i);
+            action.getOnBranches().add("main");
+            action.getPullRequest().set(true);
+            for (int j = 0; j < jobsPerAction; j++) {
+                var name = "job" + j;
+                action.gradleJob(job -> {
+                    job.getName().set(name);
+                    job.getReadOnly().set(false);
+                    var build = job.gradlew("Build", "build");
+                    job.gradlew("Test", "check").runsWith(build);
+                    job.upload("reports", List.of("build/reports"), step -> {});
+                    job.mavenRelease("github");
+                    job.recordVersion("Record Version", "version");
+                });
+            }
+            gitHubActions.add(action);
+        }
+    }
+
+    @Benchmark
+    public void render(Blackhole blackhole) throws IOException {
+        for (var action : gitHubActions) {
+            var writer = new StringWriter();
+            MakeActions.render(action, writer);
+            blackhole.consume(writer);
+        }
+    }
+}
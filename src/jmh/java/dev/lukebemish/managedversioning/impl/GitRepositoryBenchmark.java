@@ -0,0 +1,63 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitRepositoryBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int commits;
+
+    @Param({"100"})
+    public int tagInterval;
+
+    private SyntheticRepository repository;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repository = SyntheticRepository.create(commits, tagInterval);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Benchmark
+    public VersionCache.Entry inProcess() throws IOException {
+        try (var git = GitRepository.open(repository.directory.toFile())) {
+            var commit = git.head();
+            var key = git.stateKey();
+            var description = git.describe(commit);
+            var tagCommit = description.map(GitRepository.Description::commit).orElse(commit);
+            var tag = description.map(GitRepository.Description::tag).orElse("");
+            return new VersionCache.Entry(key == null ? "" : key, commit, tagCommit, tag, git.authorTime(commit));
+        }
+    }
+
+    @Benchmark
+    public void cli() throws IOException {
+        repository.git(List.of("describe", "--tags", "--abbrev=0", "--always", "HEAD"));
+        repository.git(List.of("log", "-1", "--format=%H %at", "HEAD"));
+    }
+}
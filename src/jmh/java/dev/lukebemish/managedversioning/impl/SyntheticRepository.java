@@ -0,0 +1,94 @@
+package dev.lukebemish.managedversioning.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class SyntheticRepository implements AutoCloseable {
+    private static final long START = 1_600_000_000L;
+
+    final Path directory;
+
+    private SyntheticRepository(Path directory) {
+        this.directory = directory;
+    }
+
+    static SyntheticRepository create(int commits, int tagInterval) throws IOException {
+        var repository = new SyntheticRepository(Files.createTempDirectory("managedversioning-bench"));
+        repository.git(List.of("init", "-q"));
+        var process = new ProcessBuilder("git", "fast-import", "--quiet")
+            .directory(repository.directory.toFile())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        try (var writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (int i = 1; i <= commits; i++) {
+                var message = "Commit " + i + "\n";
+                writer.write("commit refs/heads/main\nmark :" + i + "\n");
+                writer.write("committer Bench <bench@example.com> " + (START + i) + " +0000\n");
+                writer.write("data " + message.length() + "\n" + message);
+                if (i > 1) {
+                    writer.write("from :" + (i - 1) + "\n");
+                }
+                writer.write("\n");
+                // Tags trail HEAD so describe has to walk, alternating annotated and lightweight
+                if (i % tagInterval == 0 && i != commits) {
+                    var name = "1." + (i / tagInterval) + ".0";
+                    if ((i / tagInterval) % 2 == 0) {
+                        var tagMessage = "Release " + name + "\n";
+                        writer.write("tag " + name + "\nfrom :" + i + "\n");
+                        writer.write("tagger Bench <bench@example.com> " + (START + i) + " +0000\n");
+                        writer.write("data " + tagMessage.length() + "\n" + tagMessage + "\n");
+                    } else {
+                        writer.write("reset refs/tags/" + name + "\nfrom :" + i + "\n\n");
+                    }
+                }
+            }
+        }
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("git fast-import failed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        repository.git(List.of("symbolic-ref", "HEAD", "refs/heads/main"));
+        return repository;
+    }
+
+    void git(List<String> args) throws IOException {
+        var command = new ArrayList<String>();
+        command.add("git");
+        command.addAll(args);
+        var process = new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("Failed to execute git command `git " + String.join(" ", args) + "`");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (var path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package dev.lukebemish.managedversioning;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+
+public abstract class CollectTestDurationsTask extends DefaultTask {
+    @Input
+    public abstract Property<String> getProjectPath();
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getTestResults();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    @TaskAction
+    public void collectTestDurations() {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try {
+            double total = 0;
+            for (var file : getTestResults().getAsFileTree().matching(pattern -> pattern.include("**/TEST-*.xml"))) {
+                total += suiteTime(factory, file);
+            }
+            var path = getOutputFile().get().getAsFile().toPath();
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, total > 0 ? getProjectPath().get() + ' ' + String.format(Locale.ROOT, "%.3f", total) + '\n' : "");
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static double suiteTime(XMLInputFactory factory, File file) throws IOException, XMLStreamException {
+        // Only the root element is needed, so the rest of the report is never parsed
+        try (var input = Files.newInputStream(file.toPath())) {
+            var reader = factory.createXMLStreamReader(input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        var time = reader.getAttributeValue(null, "time");
+                        return time == null ? 0 : Double.parseDouble(time);
+                    }
+                }
+                return 0;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
@@ -21,6 +21,10 @@ private Constants() {}
     public static final String BUILD_CACHE_PASSWORD = "BUILD_CACHE_PASSWORD";
     public static final String BUILD_CACHE_USER = "BUILD_CACHE_USER";
     public static final String BUILD_CACHE_URL = "BUILD_CACHE_URL";
+    public static final String BUILD_CACHE_PUSH = "BUILD_CACHE_PUSH";
+    public static final String BUILD_CACHE_ALLOW_INSECURE = "BUILD_CACHE_ALLOW_INSECURE";
+    public static final String SHARD_INDEX = "SHARD_INDEX";
+    public static final String SHARD_COUNT = "SHARD_COUNT";
 
     public static final String CURSEFORGE_KEY = "CURSEFORGE_KEY";
     public static final String MODRINTH_KEY = "MODRINTH_KEY";
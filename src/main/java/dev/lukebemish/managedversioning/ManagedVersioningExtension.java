@@ -1,13 +1,22 @@
 package dev.lukebemish.managedversioning;
 
 import dev.lukebemish.managedversioning.actions.GitHubAction;
+import dev.lukebemish.managedversioning.git.SharedSnapshots;
+import dev.lukebemish.managedversioning.git.VersionDetailsSource;
 import dev.lukebemish.managedversioning.impl.GeneratedVersionDetails;
+import dev.lukebemish.managedversioning.impl.GitWorkerService;
+import dev.lukebemish.managedversioning.impl.SharedSnapshotsCleanup;
 import dev.lukebemish.managedversioning.impl.SingleProjectAction;
+import dev.lukebemish.managedversioning.impl.TimingsService;
+import dev.lukebemish.managedversioning.impl.VersionDetails;
+import dev.lukebemish.managedversioning.impl.VersionDetailsService;
 import org.gradle.api.Action;
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.file.BuildLayout;
+import org.gradle.api.flow.FlowScope;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.initialization.ProjectDescriptor;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
@@ -15,14 +24,17 @@
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.Optional;
+import org.gradle.build.event.BuildEventsListenerRegistry;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 public abstract class ManagedVersioningExtension {
@@ -34,36 +46,70 @@ public abstract class ManagedVersioningExtension {
     @Optional
     public abstract Property<String> getMetadataVersion();
     public abstract DirectoryProperty getGitWorkingDir();
+    public abstract Property<Boolean> getInProcessGit();
+    public abstract Property<Boolean> getSeparateDirtyStates();
+    public abstract Property<Boolean> getWatchGitWorkingDir();
     public abstract Property<String> getStagedChangesVersionSuffix();
     public abstract Property<String> getUnstagedChangesVersionSuffix();
     public abstract ListProperty<String> getSuffixParts();
+    public abstract RegularFileProperty getTestDurationsFile();
 
     @Inject
     public ManagedVersioningExtension(Settings settings) {
         this.publishing = getObjects().newInstance(ManagedVersioningPublishingExtension.class, settings);
         this.getGitWorkingDir().convention(getLayout().getRootDirectory());
+        this.getInProcessGit().convention(true);
+        this.getSeparateDirtyStates().convention(true);
+        this.getWatchGitWorkingDir().convention(false);
         this.getStagedChangesVersionSuffix().convention("dirty");
         this.getUnstagedChangesVersionSuffix().convention("dirty");
         this.getSuffixParts().convention(Collections.emptyList());
+        this.getTestDurationsFile().convention(getLayout().getRootDirectory().file(".github/test-durations.txt"));
 
-        this.generatedVersionDetails = GeneratedVersionDetails.make(
-            getProviders(),
-            getGitWorkingDir(),
-            getVersionFile(),
-            getMetadataVersion(),
-            getStagedChangesVersionSuffix(),
-            getUnstagedChangesVersionSuffix(),
-            getSuffixParts()
-        );
-
-        settings.getGradle().getLifecycle().beforeProject(new SingleProjectAction(
-            this.getGitWorkingDir(),
-            this.getVersionFile(),
-            this.getMetadataVersion(),
-            this.getStagedChangesVersionSuffix(),
-            this.getUnstagedChangesVersionSuffix(),
-            this.getSuffixParts()
+        GitWorkerService.register(settings.getGradle(), getBuildEvents());
+        if (settings.getGradle().getParent() == null) {
+            // A build that failed too early to run its cleanup must not hand its snapshots to this one
+            SharedSnapshots.clear();
+        }
+        getFlowScope().always(SharedSnapshotsCleanup.class, spec -> {});
+        TimingsService.register(settings.getGradle(), getBuildEvents(), getLayout().getRootDirectory());
+        this.generatedVersionDetails = GeneratedVersionDetails.shared(VersionDetailsService.register(
+            settings.getGradle(),
+            GeneratedVersionDetails.make(
+                getProviders(),
+                getGitWorkingDir(),
+                getInProcessGit(),
+                getLayout().getRootDirectory(),
+                getLayout().getRootDirectory().dir(".gradle/managedVersioning"),
+                getSeparateDirtyStates(),
+                getWatchGitWorkingDir(),
+                getVersionFile(),
+                getMetadataVersion(),
+                getStagedChangesVersionSuffix(),
+                getUnstagedChangesVersionSuffix(),
+                getSuffixParts()
+            )
         ));
+
+        // Registered once every project is included, so the root project knows which projects to collect test durations from
+        settings.getGradle().settingsEvaluated(evaluated -> {
+            var projectPaths = new ArrayList<String>();
+            collectPaths(evaluated.getRootProject(), projectPaths);
+            settings.getGradle().getLifecycle().beforeProject(new SingleProjectAction(
+                this.getGitWorkingDir(),
+                this.getVersionFile(),
+                this.getMetadataVersion(),
+                this.getTestDurationsFile(),
+                List.copyOf(projectPaths)
+            ));
+        });
+    }
+
+    private static void collectPaths(ProjectDescriptor project, List<String> paths) {
+        paths.add(project.getPath());
+        for (var child : project.getChildren()) {
+            collectPaths(child, paths);
+        }
     }
 
     @Inject
@@ -75,6 +121,12 @@ public ManagedVersioningExtension(Settings settings) {
     @Inject
     protected abstract ProviderFactory getProviders();
 
+    @Inject
+    protected abstract BuildEventsListenerRegistry getBuildEvents();
+
+    @Inject
+    protected abstract FlowScope getFlowScope();
+
     public ManagedVersioningPublishingExtension getPublishing() {
         return publishing;
     }
@@ -123,6 +175,25 @@ public Provider<Boolean> getStagedChanges() {
         return generatedVersionDetails.stagedChanges();
     }
 
+    // Each directory's version file is found at the same relative path as this build's own
+    public Provider<Map<File, VersionDetails>> resolveAll(Object... workingDirs) {
+        var rootDir = getLayout().getRootDirectory().getAsFile().toPath();
+        return getProviders().of(VersionDetailsSource.class, spec -> {
+            var ps = spec.getParameters();
+            ps.getWorkingDirs().from(getLayout().getRootDirectory().files(workingDirs));
+            ps.getInProcess().set(getInProcessGit());
+            ps.getRootDir().set(getLayout().getRootDirectory());
+            ps.getCacheDir().set(getLayout().getRootDirectory().dir(".gradle/managedVersioning"));
+            ps.getSeparateDirtyStates().set(getSeparateDirtyStates());
+            ps.getWatch().set(getWatchGitWorkingDir());
+            ps.getVersionFile().set(getVersionFile().map(file -> rootDir.relativize(file.getAsFile().toPath()).toString()));
+            ps.getHasMetadata().set(getMetadataVersion().map(s -> true).orElse(false));
+            ps.getStagedChangesVersionSuffix().set(getStagedChangesVersionSuffix());
+            ps.getUnstagedChangesVersionSuffix().set(getUnstagedChangesVersionSuffix());
+            ps.getSuffixParts().set(getSuffixParts());
+        });
+    }
+
     public void versionPRs() {
         if (System.getenv(Constants.PR_NUMBER) != null) {
             getSuffixParts().add("pr" + System.getenv(Constants.PR_NUMBER));
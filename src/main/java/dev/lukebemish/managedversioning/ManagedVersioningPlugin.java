@@ -3,16 +3,26 @@
 import dev.lukebemish.managedversioning.actions.MakeActions;
 import org.gradle.api.Plugin;
 import org.gradle.api.initialization.Settings;
+import org.gradle.caching.http.HttpBuildCache;
 import org.gradle.process.ExecOperations;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
 import java.util.List;
+import java.util.regex.Pattern;
 
 public class ManagedVersioningPlugin implements Plugin<Settings> {
+    private static final Pattern IPV4 = Pattern.compile("(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}");
+    private static final Pattern IPV6 = Pattern.compile("[0-9a-fA-F:]*:[0-9a-fA-F:.]*");
+
     @Override
     public void apply(@NotNull Settings settings) {
         ManagedVersioningExtension extension = settings.getExtensions().create("managedVersioning", ManagedVersioningExtension.class, settings);
+        configureBuildCache(settings);
         var githubActionsActions = extension.githubActionsActions;
         settings.getGradle().getLifecycle().beforeProject(project -> {
             if (project.equals(project.getRootProject())) {
@@ -27,6 +37,51 @@ public void apply(@NotNull Settings settings) {
         });
     }
 
+    private static void configureBuildCache(Settings settings) {
+        var url = System.getenv(Constants.BUILD_CACHE_URL);
+        if (url == null || url.isBlank()) {
+            return;
+        }
+        settings.getBuildCache().remote(HttpBuildCache.class, cache -> {
+            var uri = URI.create(url);
+            cache.setUrl(uri);
+            // Credentials must not travel in cleartext by accident, so plain http is left to Gradle to reject unless the
+            // cache is on this machine or it is explicitly allowed
+            cache.setAllowInsecureProtocol("http".equals(uri.getScheme()) && (isLoopback(uri.getHost()) || Boolean.parseBoolean(System.getenv(Constants.BUILD_CACHE_ALLOW_INSECURE))));
+            cache.setPush(Boolean.parseBoolean(System.getenv(Constants.BUILD_CACHE_PUSH)));
+            var user = System.getenv(Constants.BUILD_CACHE_USER);
+            if (user != null && !user.isBlank()) {
+                cache.credentials(credentials -> {
+                    credentials.setUsername(user);
+                    credentials.setPassword(System.getenv(Constants.BUILD_CACHE_PASSWORD));
+                });
+            }
+        });
+    }
+
+    private static boolean isLoopback(@Nullable String host) {
+        if (host == null) {
+            return false;
+        }
+        if (host.equalsIgnoreCase("localhost")) {
+            return true;
+        }
+        // Only address literals are checked, since a name like 127.example.com could resolve anywhere
+        String literal;
+        if (IPV4.matcher(host).matches()) {
+            literal = host;
+        } else if (host.startsWith("[") && host.endsWith("]") && IPV6.matcher(host.substring(1, host.length() - 1)).matches()) {
+            literal = host.substring(1, host.length() - 1);
+        } else {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(literal).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
     @SuppressWarnings({"UnusedReturnValue", "SameParameterValue"})
     static String smartExec(ExecOperations operations, String command, List<String> args, Object workingDir) {
         var out = new ByteArrayOutputStream();
@@ -0,0 +1,46 @@
+package dev.lukebemish.managedversioning;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.TreeMap;
+
+public abstract class RecordTestDurationsTask extends DefaultTask {
+    // One file per project, each written by that project's CollectTestDurationsTask
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract ConfigurableFileCollection getProjectDurations();
+
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    @TaskAction
+    public void recordTestDurations() {
+        var durations = new TreeMap<String, String>();
+        try {
+            for (var file : getProjectDurations()) {
+                for (var line : Files.readAllLines(file.toPath())) {
+                    int space = line.lastIndexOf(' ');
+                    if (space > 0) {
+                        durations.put(line.substring(0, space), line.substring(space + 1));
+                    }
+                }
+            }
+            var output = new StringBuilder("# Test durations in seconds, used to balance sharded GradleJobs\n");
+            durations.forEach((path, seconds) -> output.append(path).append(' ').append(seconds).append('\n'));
+            var path = getOutputFile().get().getAsFile().toPath();
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, output);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -5,6 +5,7 @@
 import org.gradle.api.provider.ValueSourceParameters;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Properties;
@@ -16,7 +17,10 @@ public String obtain() {
         if (!getParameters().getVersionFile().isPresent()) {
             throw new RuntimeException("Version file not specified");
         }
-        var file = getParameters().getVersionFile().get().getAsFile();
+        return read(getParameters().getVersionFile().get().getAsFile());
+    }
+
+    public static @Nullable String read(File file) {
         try (var reader = new FileReader(file)) {
             var properties = new Properties();
             properties.load(reader);
@@ -1,17 +1,20 @@
 package dev.lukebemish.managedversioning;
 
+import dev.lukebemish.managedversioning.impl.GitRepository;
+import dev.lukebemish.managedversioning.impl.Timings;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.ValueSource;
 import org.gradle.api.provider.ValueSourceParameters;
 import org.gradle.process.ExecOperations;
+import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Inject;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Arrays;
 import java.util.List;
 
 public abstract class VersionValueSource implements ValueSource<String, VersionValueSource.Parameters> {
@@ -24,77 +27,51 @@ public VersionValueSource(ExecOperations execOperations) {
 
     @Override
     public final String obtain() {
+        return Timings.time(rootDir(), "version", String.valueOf(getParameters().getWorkingDir().getOrNull()), this::version);
+    }
+
+    private String version() {
         var fileVersion = getParameters().getFromFile().get();
         var lastTagHash = getParameters().getTagHash().get();
         String lastTagVersion = "";
         if (!lastTagHash.isBlank()) {
-            lastTagVersion = value(List.of("describe", "--tags", lastTagHash));
+            lastTagVersion = getParameters().getTagVersion().isPresent() ? getParameters().getTagVersion().get() : describe(lastTagHash);
         }
-        StringBuilder version;
-
         if (getParameters().getHasMetadata().getOrElse(false)) {
-            var parts = lastTagVersion.split("-");
-            if (parts.length > 1) {
-                StringBuilder sb = new StringBuilder();
-                for (int i = 0; i < parts.length - 1; i++) {
-                    if (i > 0) {
-                        sb.append("-");
-                    }
-                    sb.append(parts[i]);
-                }
-                lastTagVersion = sb.toString();
-            }
+            lastTagVersion = Versions.stripMetadata(lastTagVersion);
         }
-        version = new StringBuilder(fileVersion);
+        return Versions.version(
+            fileVersion,
+            getParameters().getCommitHash().get(),
+            lastTagHash,
+            lastTagVersion,
+            getParameters().getSuffixParts().get(),
+            getParameters().getStagedChanges().get(),
+            getParameters().getUnstagedChanges().get(),
+            getParameters().getStagedChangesVersionSuffix().get(),
+            getParameters().getUnstagedChangesVersionSuffix().get()
+        );
+    }
 
-        if (fileVersion.equals(lastTagVersion)) {
-            if (!lastTagHash.equals(getParameters().getCommitHash().get())) {
-                var noMetaParts = version.toString().split("-");
-                int lastMetaNumber = 0;
-                for (int i = 0; i < noMetaParts.length; i++) {
-                    if (noMetaParts[i].matches(".*\\.\\d+.*")) {
-                        lastMetaNumber = i;
-                    }
+    private String describe(String commit) {
+        if (getParameters().getInProcess().getOrElse(true) && getParameters().getWorkingDir().isPresent()) {
+            try (var repository = GitRepository.open(getParameters().getWorkingDir().get().getAsFile())) {
+                var description = repository.describe(commit);
+                // Past a tag, git's output depends on its abbreviation rules, so only exact matches are answered here
+                if (description.isPresent() && description.get().depth() == 0) {
+                    return description.get().tag();
                 }
-                var noBuildParts = noMetaParts[lastMetaNumber].split("\\+");
-                int lastBuildNumber = 0;
-                for (int i = 0; i < noBuildParts.length; i++) {
-                    if (noBuildParts[i].matches(".*\\.\\d+.*")) {
-                        lastBuildNumber = i;
-                    }
-                }
-                var mainParts = noBuildParts[lastBuildNumber].split("\\.");
-                mainParts[mainParts.length-1] = Integer.toString(Integer.parseInt(mainParts[mainParts.length-1])+1);
-                noBuildParts[lastBuildNumber] = String.join(".", mainParts);
-                noMetaParts[lastMetaNumber] = String.join("+", noBuildParts);
-                version = new StringBuilder(String.join("-", noMetaParts));
+            } catch (IOException ignored) {
+                // Anything the in-process reader does not understand is left to the git CLI
             }
         }
-
-        var versionParts = version.toString().split("-");
-
-        for (var part : getParameters().getSuffixParts().get()) {
-            if (Arrays.stream(versionParts).noneMatch(part::equals)) {
-                version.append("-").append(part);
-            }
-        }
-
-        boolean unstagedChanges = getParameters().getUnstagedChanges().get();
-        boolean stagedChanges = getParameters().getStagedChanges().get();
-
-        if (unstagedChanges) {
-            version.append("-").append(getParameters().getUnstagedChangesVersionSuffix().get());
-        } else if (stagedChanges) {
-            version.append("-").append(getParameters().getStagedChangesVersionSuffix().get());
-        }
-
-        return version.toString();
+        return value(List.of("describe", "--tags", commit));
     }
 
     private String value(List<String> args) {
         var out = new ByteArrayOutputStream();
         var err = new ByteArrayOutputStream();
-        try {
+        try (var timer = Timings.start(rootDir(), "git", "git " + String.join(" ", args))) {
             execOperations.exec(spec -> {
                 spec.setExecutable("git");
                 spec.setArgs(args);
@@ -104,6 +81,7 @@ private String value(List<String> args) {
                     spec.setWorkingDir(getParameters().getWorkingDir().get().getAsFile());
                 }
             });
+            timer.bytes(out.size());
             return out.toString().trim();
         } catch (Exception e) {
             throw new RuntimeException("Failed to execute git command `git "+String.join(" ", args)+"`: " + err.toString().trim(), e);
@@ -111,25 +89,33 @@ private String value(List<String> args) {
     }
 
     private Integer result(List<String> args) {
-        try (var out = OutputStream.nullOutputStream()) {
-            var result = execOperations.exec(spec -> {
-                spec.setExecutable("git");
-                spec.setArgs(args);
-                spec.setErrorOutput(out);
-                spec.setStandardOutput(out);
-                if (getParameters().getWorkingDir().isPresent()) {
-                    spec.setWorkingDir(getParameters().getWorkingDir().get().getAsFile());
-                }
-                spec.setIgnoreExitValue(true);
-            });
-            return result.getExitValue();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return Timings.time(rootDir(), "git", "git " + String.join(" ", args), () -> {
+            try (var out = OutputStream.nullOutputStream()) {
+                var result = execOperations.exec(spec -> {
+                    spec.setExecutable("git");
+                    spec.setArgs(args);
+                    spec.setErrorOutput(out);
+                    spec.setStandardOutput(out);
+                    if (getParameters().getWorkingDir().isPresent()) {
+                        spec.setWorkingDir(getParameters().getWorkingDir().get().getAsFile());
+                    }
+                    spec.setIgnoreExitValue(true);
+                });
+                return result.getExitValue();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private @Nullable File rootDir() {
+        return getParameters().getRootDir().isPresent() ? getParameters().getRootDir().get().getAsFile() : null;
     }
 
     public interface Parameters extends ValueSourceParameters {
         DirectoryProperty getWorkingDir();
+        DirectoryProperty getRootDir();
+        Property<Boolean> getInProcess();
         Property<Boolean> getHasMetadata();
         Property<String> getStagedChangesVersionSuffix();
         Property<String> getUnstagedChangesVersionSuffix();
@@ -139,5 +125,6 @@ public interface Parameters extends ValueSourceParameters {
         ListProperty<String> getSuffixParts();
         Property<String> getFromFile();
         Property<String> getTagHash();
+        Property<String> getTagVersion();
     }
 }
@@ -0,0 +1,169 @@
+package dev.lukebemish.managedversioning;
+
+import java.util.List;
+
+public final class Versions {
+    private Versions() {}
+
+    public static String bump(String version) {
+        var out = new StringBuilder(version.length() + 1);
+        bump(version, out);
+        return out.toString();
+    }
+
+    public static void bump(CharSequence version, StringBuilder out) {
+        int end = version.length();
+        while (end > 0 && version.charAt(end - 1) == '-') {
+            end--;
+        }
+
+        // The last '-' separated segment holding a dotted number, or the first one
+        int metaStart = 0;
+        int metaEnd = indexOf(version, '-', 0, end);
+        for (int start = 0; start < end; ) {
+            int stop = indexOf(version, '-', start, end);
+            if (hasDottedNumber(version, start, stop)) {
+                metaStart = start;
+                metaEnd = stop;
+            }
+            start = stop + 1;
+        }
+        int metaTrimmed = metaEnd;
+        while (metaTrimmed > metaStart && version.charAt(metaTrimmed - 1) == '+') {
+            metaTrimmed--;
+        }
+
+        // Within it, the last '+' separated part holding a dotted number, or the first one
+        int buildStart = metaStart;
+        int buildEnd = indexOf(version, '+', metaStart, metaTrimmed);
+        for (int start = metaStart; start < metaTrimmed; ) {
+            int stop = indexOf(version, '+', start, metaTrimmed);
+            if (hasDottedNumber(version, start, stop)) {
+                buildStart = start;
+                buildEnd = stop;
+            }
+            start = stop + 1;
+        }
+        int buildTrimmed = buildEnd;
+        while (buildTrimmed > buildStart && version.charAt(buildTrimmed - 1) == '.') {
+            buildTrimmed--;
+        }
+        if (buildTrimmed == buildStart) {
+            throw new NumberFormatException("No numeric component to bump in version \"" + version + "\"");
+        }
+
+        int numberStart = buildTrimmed;
+        while (numberStart > buildStart && version.charAt(numberStart - 1) != '.') {
+            numberStart--;
+        }
+        int number = 0;
+        for (int i = numberStart; i < buildTrimmed; i++) {
+            int digit = Character.digit(version.charAt(i), 10);
+            if (digit < 0 || number > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + version.subSequence(numberStart, buildTrimmed) + "\"");
+            }
+            number = number * 10 + digit;
+        }
+
+        out.append(version, 0, numberStart);
+        out.append(number + 1);
+        out.append(version, buildEnd, metaTrimmed);
+        out.append(version, metaEnd, end);
+    }
+
+    // tagCommit and tagVersion are blank when HEAD is tagged itself or there is no tag to build on
+    public static String version(
+        String fileVersion,
+        String commit,
+        String tagCommit,
+        String tagVersion,
+        List<String> suffixParts,
+        boolean stagedChanges,
+        boolean unstagedChanges,
+        String stagedChangesSuffix,
+        String unstagedChangesSuffix
+    ) {
+        var version = new StringBuilder(fileVersion);
+
+        if (fileVersion.equals(tagVersion)) {
+            if (!tagCommit.equals(commit)) {
+                version.setLength(0);
+                bump(fileVersion, version);
+            }
+        }
+
+        int baseLength = version.length();
+        for (var part : suffixParts) {
+            if (!hasPart(version, baseLength, part)) {
+                version.append("-").append(part);
+            }
+        }
+
+        if (unstagedChanges) {
+            version.append("-").append(unstagedChangesSuffix);
+        } else if (stagedChanges) {
+            version.append("-").append(stagedChangesSuffix);
+        }
+
+        return version.toString();
+    }
+
+    public static String stripMetadata(String version) {
+        int end = version.length();
+        while (end > 0 && version.charAt(end - 1) == '-') {
+            end--;
+        }
+        int last = version.lastIndexOf('-', end - 1);
+        if (last < 0) {
+            return version;
+        }
+        return version.substring(0, last);
+    }
+
+    static boolean hasPart(CharSequence version, int end, String part) {
+        if (end == 0) {
+            return part.isEmpty();
+        }
+        while (end > 0 && version.charAt(end - 1) == '-') {
+            end--;
+        }
+        for (int start = 0; start < end; ) {
+            int stop = indexOf(version, '-', start, end);
+            if (stop - start == part.length() && regionMatches(version, start, part)) {
+                return true;
+            }
+            start = stop + 1;
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence version, int start, String part) {
+        for (int i = 0; i < part.length(); i++) {
+            if (version.charAt(start + i) != part.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasDottedNumber(CharSequence version, int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (version.charAt(i) == '.') {
+                char next = version.charAt(i + 1);
+                if (next >= '0' && next <= '9') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(CharSequence version, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (version.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,50 @@
+package dev.lukebemish.managedversioning.actions;
+
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public abstract class Cache {
+    @Input
+    public abstract Property<String> getName();
+    @Input
+    public abstract ListProperty<String> getPaths();
+    @Input
+    public abstract ListProperty<List<String>> getLayers();
+    @Input
+    public abstract ListProperty<String> getRestoreKeys();
+
+    @Inject
+    public Cache() {
+        // Falling back one layer at a time restores the closest match instead of whatever was saved last
+        this.getRestoreKeys().convention(getLayers().zip(getName(), (layers, name) -> {
+            var keys = new ArrayList<String>();
+            for (int i = layers.size() - 1; i >= 0; i--) {
+                keys.add(key(name, layers.subList(0, i)) + "-");
+            }
+            return keys;
+        }));
+    }
+
+    // Layers go from least to most often changed, and each is hashed on its own
+    public void layer(String... globs) {
+        getLayers().add(List.of(globs));
+    }
+
+    String key() {
+        return key(getName().get(), getLayers().get());
+    }
+
+    private static String key(String name, List<List<String>> layers) {
+        var key = new StringBuilder("${{ runner.os }}-").append(name);
+        for (var layer : layers) {
+            key.append("-${{ hashFiles(").append(layer.stream().map(glob -> "'" + glob + "'").collect(Collectors.joining(", "))).append(") }}");
+        }
+        return key.toString();
+    }
+}
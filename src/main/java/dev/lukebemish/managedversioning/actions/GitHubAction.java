@@ -77,7 +77,7 @@ public Job testReportJob(Action<? super TestReportJob> action) {
         return job;
     }
 
-    Object resolve() {
+    Map<String, Object> resolve() {
         Map<String, Object> action = new LinkedHashMap<>();
         action.put("name", getPrettyName().get());
         if (getConcurrency().isPresent()) {
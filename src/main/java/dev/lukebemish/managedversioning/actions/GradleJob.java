@@ -9,6 +9,7 @@
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.Optional;
 
 import javax.inject.Inject;
@@ -17,8 +18,22 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 public abstract class GradleJob extends Job {
+    private static final String DEEPEN_TO_TAG = """
+        git fetch --no-tags --filter=tree:0 --depth=1 origin '+refs/tags/*:refs/tags/*'
+        head="$(git rev-parse HEAD)"
+        depth=1
+        until git describe --tags --abbrev=0 > /dev/null 2>&1 || [ "$(git rev-parse --is-shallow-repository)" = false ]; do
+            depth=$((depth * 4))
+            if [ "$depth" -gt 65536 ]; then
+                git fetch --no-tags --filter=tree:0 --unshallow origin "$head"
+            else
+                git fetch --no-tags --filter=tree:0 --depth="$depth" origin "$head"
+            fi
+        done""";
+
     @Input
     public abstract Property<String> getName();
     @Input
@@ -29,6 +44,8 @@ public abstract class GradleJob extends Job {
     public abstract Property<Boolean> getCacheReadOnly();
     @Input
     public abstract ListProperty<String> getCachePaths();
+    @Nested
+    public abstract ListProperty<Cache> getCaches();
     @Input
     public abstract ListProperty<Step> getSteps();
     @Input
@@ -37,6 +54,10 @@ public abstract class GradleJob extends Job {
     public abstract MapProperty<String, String> getOutputs();
     @Input
     public abstract ListProperty<String> getNeeds();
+    @Input
+    public abstract Property<Boolean> getShallowHistory();
+    @Input
+    public abstract Property<Integer> getShards();
 
     @Input
     @Optional
@@ -50,8 +71,17 @@ public GradleJob() {
         super();
         getJavaVersion().convention("17");
         getReadOnly().convention(true);
+        getShallowHistory().convention(false);
+        getShards().convention(1);
         getCachePaths().add("**/.gradle/loom-cache");
         getCachePaths().add("**/.gradle/quilt-loom-cache");
+        // The wrapper distribution and dependency caches are saved by setup-gradle, which already keys them per entry
+        cache("gradle", cache -> {
+            cache.getPaths().addAll(getCachePaths());
+            cache.layer("**/gradle-wrapper.properties");
+            cache.layer("**/libs.versions.*");
+            cache.layer("**/*.gradle*");
+        });
 
         this.getCacheReadOnly().convention(getReadOnly());
 
@@ -65,6 +95,14 @@ public Step step(Action<Step> action) {
         return step;
     }
 
+    public Cache cache(String name, Action<Cache> action) {
+        Cache cache = getObjects().newInstance(Cache.class);
+        cache.getName().set(name);
+        action.execute(cache);
+        this.getCaches().add(cache);
+        return cache;
+    }
+
     public Step dependencySubmission() {
         return step(step -> {
             step.getName().set("Submit Dependencies");
@@ -85,7 +123,15 @@ void setup() {
             earlySteps.add(configureStep(step -> {
                 step.getName().set("Checkout");
                 step.getUses().set(Constants.Versions.CHECKOUT);
-                step.getWith().put("fetch-depth", "0");
+                if (!getShallowHistory().get()) {
+                    step.getWith().put("fetch-depth", "0");
+                } else if (getReadOnly().get()) {
+                    // Without persisted credentials nothing can be fetched later, so take every commit but no trees or blobs
+                    step.getWith().put("fetch-depth", "0");
+                    step.getWith().put("filter", "tree:0");
+                } else {
+                    step.getWith().put("fetch-depth", "1");
+                }
                 if (getTag().isPresent()) {
                     step.getWith().put("ref", "refs/tags/"+getTag().get());
                 }
@@ -93,21 +139,32 @@ void setup() {
                     step.getWith().put("persist-credentials", "false");
                 }
             }));
+            if (getShallowHistory().get() && !getReadOnly().get()) {
+                earlySteps.add(configureStep(step -> {
+                    step.getName().set("Fetch History To Latest Tag");
+                    step.getRun().set(DEEPEN_TO_TAG);
+                }));
+            }
             earlySteps.add(configureStep(step -> {
                 step.getName().set("Validate Gradle Wrapper");
                 step.getUses().set(Constants.Versions.WRAPPER_VALIDATION);
             }));
-            if (!getCachePaths().get().isEmpty()) {
+            for (var cache : getCaches().get()) {
+                if (cache.getPaths().get().isEmpty()) {
+                    continue;
+                }
                 earlySteps.add(configureStep(step -> {
-                    step.getName().set("Cache");
+                    step.getName().set("Cache " + cache.getName().get());
                     if (getCacheReadOnly().get()) {
                         step.getUses().set(Constants.Versions.CACHE_RESTORE);
                     } else {
                         step.getUses().set(Constants.Versions.CACHE_BOTH);
                     }
-                    step.getWith().put("path", String.join("\n", getCachePaths().get()));
-                    step.getWith().put("key", "${{ runner.os }}-gradle-${{ hashFiles('**/libs.versions.*', '**/*.gradle*', '**/gradle-wrapper.properties') }}");
-                    step.getWith().put("restore-keys", "${{ runner.os }}-gradle-");
+                    step.getWith().put("path", String.join("\n", cache.getPaths().get()));
+                    step.getWith().put("key", cache.key());
+                    if (!cache.getRestoreKeys().get().isEmpty()) {
+                        step.getWith().put("restore-keys", String.join("\n", cache.getRestoreKeys().get()));
+                    }
                 }));
             }
             earlySteps.add(configureStep(step -> {
@@ -121,6 +178,29 @@ void setup() {
             return earlySteps;
         });
         getSteps().addAll(earlyStepProvider);
+        this.getParameters().putAll(getShards().map(shards -> {
+            Map<String, Object> parameters = new LinkedHashMap<>();
+            if (shards > 1) {
+                // Every step runs once per shard, so pushing, tagging, publishing and job outputs would all race
+                if (!getReadOnly().get() || !getOutputs().get().isEmpty()) {
+                    throw new RuntimeException("Job '" + getName().get() + "' can only be split into shards if it is read-only and has no outputs");
+                }
+                Map<String, Object> strategy = new LinkedHashMap<>();
+                // One slow or failing shard should not cancel the test results of the others
+                strategy.put("fail-fast", false);
+                strategy.put("matrix", Map.of("shard", IntStream.range(0, shards).boxed().toList()));
+                parameters.put("strategy", strategy);
+            }
+            return parameters;
+        }));
+        this.getGradleEnv().putAll(getShards().map(shards -> {
+            Map<String, String> env = new LinkedHashMap<>();
+            if (shards > 1) {
+                env.put(Constants.SHARD_INDEX, "${{ matrix.shard }}");
+                env.put(Constants.SHARD_COUNT, String.valueOf(shards));
+            }
+            return env;
+        }));
         this.getPermissions().putAll(getReadOnly().map(readOnly -> {
             Map<String, String> permissions = new LinkedHashMap<>();
             if (!readOnly) {
@@ -183,6 +263,19 @@ public void upload(String name, List<String> paths, Action<Step> action) {
         });
     }
 
+    public void testResults(String artifact) {
+        testResults(artifact, List.of("**/build/test-results/**/*.xml"));
+    }
+
+    // For builds that move their JUnit XML reports away from the default location
+    public void testResults(String artifact, List<String> paths) {
+        upload("Test Results", paths, step -> {
+            // Each shard uploads its own artifact, which TestReportJob#junitShards merges back together
+            step.getWith().put("name", getShards().map(shards -> shards > 1 ? artifact + "-${{ matrix.shard }}" : artifact));
+            step.getRunsOnError().set(true);
+        });
+    }
+
     public void recordVersion(String name, String outputName) {
         gradlew(name, "recordVersion");
         String captureId = name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "_")+"_capture_version";
@@ -231,6 +324,8 @@ public void buildCache() {
         secret(Constants.BUILD_CACHE_PASSWORD);
         secret(Constants.BUILD_CACHE_USER);
         secret(Constants.BUILD_CACHE_URL);
+        // Read-only jobs, like pull requests, only read from the cache so they cannot poison it
+        getGradleEnv().put(Constants.BUILD_CACHE_PUSH, getReadOnly().map(readOnly -> Boolean.toString(!readOnly)));
     }
 
     public void modPublishing() {
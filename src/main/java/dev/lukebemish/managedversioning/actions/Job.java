@@ -30,7 +30,7 @@ public abstract class Job {
     public abstract Property<String> getIf();
     @Input
     public abstract MapProperty<String, String> getOutputs();
-    @Nested
+    @Input
     public abstract MapProperty<String, Object> getParameters();
 
     @Inject
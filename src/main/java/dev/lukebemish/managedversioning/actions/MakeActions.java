@@ -1,38 +1,58 @@
 package dev.lukebemish.managedversioning.actions;
 
-import groovy.json.JsonOutput;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.work.DisableCachingByDefault;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Nested;
-import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFiles;
 import org.gradle.api.tasks.TaskAction;
-import org.gradle.api.tasks.UntrackedTask;
+import org.gradle.workers.WorkerExecutor;
 
+import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-@UntrackedTask(because = "Regenerates GitHub Actions")
+@DisableCachingByDefault(because = "Writes into the source tree, which a cache hit would overwrite; up-to-date checks already skip unchanged runs")
 public abstract class MakeActions extends DefaultTask {
-    @OutputDirectory
+    @Internal
     public abstract DirectoryProperty getActionsDirectory();
 
     @Nested
     public abstract NamedDomainObjectContainer<GitHubAction> getGitHubActions();
 
+    // Only the generated files are outputs, since the directory may also hold hand-written workflows
+    @OutputFiles
+    public Map<String, File> getWorkflowFiles() {
+        var actionsDirectory = getActionsDirectory().get().getAsFile().getAbsoluteFile();
+        var files = new LinkedHashMap<String, File>();
+        for (var action : getGitHubActions()) {
+            files.put(action.getName(), new File(actionsDirectory, action.getName() + ".yml"));
+        }
+        return files;
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
     @TaskAction
     public void execute() {
-        var actionsDirectory = this.getActionsDirectory().get().getAsFile();
-        getGitHubActions().forEach(action -> {
-            String name = action.getName();
-            var actionFile = actionsDirectory.getAbsoluteFile().toPath().resolve(name+".yml");
-            try {
-                Files.createDirectories(actionFile.getParent());
-                String json = JsonOutput.prettyPrint(JsonOutput.toJson(action.resolve()));
-                Files.writeString(actionFile, json);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        var queue = getWorkerExecutor().noIsolation();
+        var files = getWorkflowFiles();
+        for (var action : getGitHubActions()) {
+            var workflow = action.resolve();
+            queue.submit(WriteWorkflow.class, parameters -> {
+                parameters.getWorkflow().set(workflow);
+                parameters.getOutputFile().set(files.get(action.getName()));
+            });
+        }
+    }
+
+    static void render(GitHubAction action, Writer writer) throws IOException {
+        YamlWriter.write(action.resolve(), writer);
     }
 }
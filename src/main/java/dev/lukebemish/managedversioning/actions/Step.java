@@ -6,7 +6,6 @@
 import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
-import org.gradle.api.tasks.Nested;
 import org.gradle.api.tasks.Optional;
 
 import javax.inject.Inject;
@@ -37,7 +36,7 @@ public abstract class Step {
     public abstract Property<Boolean> getRunsOnError();
     @Input
     public abstract ListProperty<String> getRequiredSteps();
-    @Nested
+    @Input
     public abstract MapProperty<String, Object> getParameters();
 
     @Inject
@@ -39,11 +39,34 @@ public Step step(Action<Step> action) {
     }
 
     public Step junit(String name, String path, String artifact) {
+        return report(name, path, step -> step.getWith().put("artifact", artifact));
+    }
+
+    public Step junitShards(String name, String path, String artifact) {
+        step(step -> {
+            step.getName().set("Checkout");
+            step.getUses().set(Constants.Versions.CHECKOUT);
+            step.getWith().put("persist-credentials", "false");
+        });
+        step(step -> {
+            step.getName().set(name.isBlank() ? "Download Test Results" : "Download Test Results - " + name);
+            step.getUses().set(Constants.Versions.DOWNLOAD_ARTIFACT);
+            step.getWith().put("pattern", artifact + "-*");
+            step.getWith().put("merge-multiple", "true");
+            step.getWith().put("path", "test-results");
+            step.getWith().put("run-id", "${{ github.event.workflow_run.id || github.run_id }}");
+            step.getWith().put("github-token", "${{ github.token }}");
+        });
+        // Reporting from the merged download gives one check for every shard instead of one per shard
+        return report(name, "test-results/" + path, step -> {});
+    }
+
+    private Step report(String name, String path, Action<Step> action) {
         return step(step -> {
             step.getName().set(name.isBlank() ? "JUnit Test Report" : "JUnit Test Report - " + name);
             step.getUses().set(Constants.Versions.TEST_REPORTER);
             step.getWith().put("name", name.isBlank() ? "Test Results" : "Test Results - " + name);
-            step.getWith().put("artifact", artifact);
+            action.execute(step);
             step.getWith().put("path", path);
             step.getWith().put("reporter", "java-junit");
             step.getWith().put("fail-on-error", "true");
@@ -0,0 +1,52 @@
+package dev.lukebemish.managedversioning.actions;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public abstract class WriteWorkflow implements WorkAction<WriteWorkflow.Parameters> {
+    @Override
+    public void execute() {
+        var workflow = getParameters().getWorkflow().get();
+        var file = getParameters().getOutputFile().get().getAsFile().toPath();
+        try {
+            var rendered = new ByteArrayOutputStream();
+            try (var writer = new OutputStreamWriter(rendered, StandardCharsets.UTF_8)) {
+                YamlWriter.write(workflow, writer);
+            }
+            var bytes = rendered.toByteArray();
+            // Leaving unchanged files alone keeps their mtimes, and so git status, quiet
+            if (Arrays.equals(bytes, existing(file))) {
+                return;
+            }
+            Files.createDirectories(file.getParent());
+            Files.write(file, bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte @Nullable [] existing(Path file) throws IOException {
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public interface Parameters extends WorkParameters {
+        MapProperty<String, Object> getWorkflow();
+        RegularFileProperty getOutputFile();
+    }
+}
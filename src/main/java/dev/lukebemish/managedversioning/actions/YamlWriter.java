@@ -0,0 +1,226 @@
+package dev.lukebemish.managedversioning.actions;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+final class YamlWriter {
+    private static final Set<String> RESERVED = Set.of(
+        "true", "false", "yes", "no", "on", "off", "y", "n", "null", "~"
+    );
+
+    private final Writer writer;
+
+    private YamlWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    static void write(Object document, Writer writer) throws IOException {
+        var yaml = new YamlWriter(writer);
+        if (document instanceof Map<?, ?> map && !map.isEmpty()) {
+            yaml.map(map, 0, false);
+        } else if (document instanceof Collection<?> list && !list.isEmpty()) {
+            yaml.list(list, 0, false);
+        } else {
+            yaml.scalar(document, 2);
+        }
+    }
+
+    // When inline is set, the first line continues after a "- " that has already been written
+    private void map(Map<?, ?> map, int indent, boolean inline) throws IOException {
+        for (var entry : map.entrySet()) {
+            if (inline) {
+                inline = false;
+            } else {
+                indent(indent);
+            }
+            plainOrQuoted(String.valueOf(entry.getKey()));
+            writer.write(':');
+            value(entry.getValue(), indent);
+        }
+    }
+
+    private void list(Collection<?> list, int indent, boolean inline) throws IOException {
+        for (var item : list) {
+            if (inline) {
+                inline = false;
+            } else {
+                indent(indent);
+            }
+            writer.write('-');
+            if (item instanceof Map<?, ?> map && !map.isEmpty()) {
+                writer.write(' ');
+                map(map, indent + 2, true);
+            } else if (item instanceof Collection<?> nested && !nested.isEmpty()) {
+                writer.write(' ');
+                list(nested, indent + 2, true);
+            } else {
+                writer.write(' ');
+                scalar(item, indent + 2);
+            }
+        }
+    }
+
+    private void value(Object value, int indent) throws IOException {
+        if (value instanceof Map<?, ?> map && !map.isEmpty()) {
+            writer.write('\n');
+            map(map, indent + 2, false);
+        } else if (value instanceof Collection<?> list && !list.isEmpty()) {
+            writer.write('\n');
+            list(list, indent + 2, false);
+        } else {
+            writer.write(' ');
+            scalar(value, indent + 2);
+        }
+    }
+
+    private void scalar(Object value, int indent) throws IOException {
+        if (value == null) {
+            writer.write("null\n");
+        } else if (value instanceof Map<?, ?>) {
+            writer.write("{}\n");
+        } else if (value instanceof Collection<?>) {
+            writer.write("[]\n");
+        } else if (value instanceof Boolean || value instanceof Number) {
+            writer.write(value.toString());
+            writer.write('\n');
+        } else {
+            var string = value.toString();
+            if (isLiteral(string)) {
+                literal(string, indent);
+            } else {
+                plainOrQuoted(string);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private void indent(int indent) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            writer.write(' ');
+        }
+    }
+
+    // Scripts keep their line breaks as a literal block so the workflow file stays readable
+    private static boolean isLiteral(String string) {
+        int newline = string.indexOf('\n');
+        if (newline < 0 || string.startsWith(" ") || string.startsWith("\n")) {
+            return false;
+        }
+        int lineStart = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '\n') {
+                lineStart = i + 1;
+            } else if (!isPrintable(c) || c == '\t' && i == lineStart) {
+                return false;
+            } else if (c == ' ' && i == lineStart && isBlankFrom(string, i)) {
+                // A line of only spaces would be read back as an empty line
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlankFrom(String string, int start) {
+        for (int i = start; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '\n') {
+                return true;
+            } else if (c != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void literal(String string, int indent) throws IOException {
+        int end = string.length();
+        while (end > 0 && string.charAt(end - 1) == '\n') {
+            end--;
+        }
+        int trailing = string.length() - end;
+        writer.write(trailing == 0 ? "|-" : trailing == 1 ? "|" : "|+");
+        writer.write('\n');
+        int lineStart = 0;
+        for (int i = 0; i <= string.length(); i++) {
+            if (i == string.length() || string.charAt(i) == '\n') {
+                if (i == string.length() && lineStart == i) {
+                    break;
+                }
+                if (i > lineStart) {
+                    indent(indent);
+                    writer.write(string, lineStart, i - lineStart);
+                }
+                writer.write('\n');
+                lineStart = i + 1;
+            }
+        }
+    }
+
+    private void plainOrQuoted(String string) throws IOException {
+        if (isPlain(string)) {
+            writer.write(string);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (isPrintable(c)) {
+                        writer.write(c);
+                    } else {
+                        writer.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static boolean isPlain(String string) {
+        if (string.isEmpty() || RESERVED.contains(string.toLowerCase(Locale.ROOT)) || string.equals("<<")) {
+            return false;
+        }
+        char first = string.charAt(0);
+        if ("-?:,[]{}#&*!|>'\"%@`+".indexOf(first) >= 0 || Character.isDigit(first)) {
+            // Leading digits and signs could read back as numbers or dates, which is not worth telling apart precisely
+            return false;
+        }
+        if (first == '.' && string.length() > 1 && (Character.isDigit(string.charAt(1)) || isSpecialFloat(string) || string.startsWith("..."))) {
+            return false;
+        }
+        if (first == ' ' || string.charAt(string.length() - 1) == ' ' || string.endsWith(":")) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (!isPrintable(c) || c == '\t') {
+                return false;
+            }
+            if (c == ':' && string.charAt(i + 1) == ' ' || c == '#' && string.charAt(i - 1) == ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpecialFloat(String string) {
+        var lower = string.toLowerCase(Locale.ROOT);
+        return lower.equals(".inf") || lower.equals(".nan");
+    }
+
+    private static boolean isPrintable(char c) {
+        // YAML 1.1 readers also treat NEL and the Unicode line and paragraph separators as line breaks
+        return c == '\t' || (c >= 0x20 && c < 0x7f) || (c >= 0xa0 && c != 0x2028 && c != 0x2029 && c != 0xfeff && c < 0xfffe);
+    }
+}
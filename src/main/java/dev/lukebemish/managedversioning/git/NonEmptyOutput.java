@@ -0,0 +1,26 @@
+package dev.lukebemish.managedversioning.git;
+
+import java.io.OutputStream;
+
+// Settles on the first byte, so output of any size is only counted, never collected
+final class NonEmptyOutput extends OutputStream {
+    private long size;
+
+    @Override
+    public void write(int b) {
+        size++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) {
+        size += count;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long size() {
+        return size;
+    }
+}
@@ -0,0 +1,45 @@
+package dev.lukebemish.managedversioning.git;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Every build of a composite configures its own sources, so a repository they share is resolved here once per build instead.
+// Build services cannot be passed to value sources, hence the static state; it is cleared whenever a build starts or ends.
+public final class SharedSnapshots {
+    private static final Map<Key, CompletableFuture<VersionSnapshot>> SNAPSHOTS = new ConcurrentHashMap<>();
+
+    private SharedSnapshots() {}
+
+    public static void clear() {
+        SNAPSHOTS.clear();
+    }
+
+    static VersionSnapshot resolve(File workTree, boolean inProcess, boolean combined, Supplier<VersionSnapshot> resolver) {
+        var key = new Key(workTree, inProcess, combined);
+        var future = new CompletableFuture<VersionSnapshot>();
+        var existing = SNAPSHOTS.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            var snapshot = resolver.get();
+            future.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            // A failure is not remembered, so the next source to ask tries again
+            SNAPSHOTS.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private record Key(File workTree, boolean inProcess, boolean combined) {}
+}
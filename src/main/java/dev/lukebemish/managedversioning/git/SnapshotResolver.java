@@ -0,0 +1,248 @@
+package dev.lukebemish.managedversioning.git;
+
+import dev.lukebemish.managedversioning.impl.DirtyChecker;
+import dev.lukebemish.managedversioning.impl.GitRepository;
+import dev.lukebemish.managedversioning.impl.GitWorker;
+import dev.lukebemish.managedversioning.impl.Timings;
+import dev.lukebemish.managedversioning.impl.VersionCache;
+import dev.lukebemish.managedversioning.impl.WorkTreeWatcher;
+import org.gradle.process.ExecOperations;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+final class SnapshotResolver {
+    private final ExecOperations execOperations;
+    private final @Nullable File rootDir;
+    private final @Nullable File workingDir;
+    private final @Nullable File cacheDir;
+    private final boolean inProcess;
+    private final boolean combined;
+    private final boolean watch;
+
+    SnapshotResolver(ExecOperations execOperations, @Nullable File rootDir, @Nullable File workingDir, @Nullable File cacheDir, boolean inProcess, boolean combined, boolean watch) {
+        this.execOperations = execOperations;
+        this.rootDir = rootDir;
+        this.workingDir = workingDir;
+        this.cacheDir = cacheDir;
+        this.inProcess = inProcess;
+        this.combined = combined;
+        this.watch = watch;
+    }
+
+    // Directories of the same repository resolve identically, so results are shared by work tree
+    static File workTree(File workingDir, boolean inProcess) {
+        if (inProcess) {
+            try (var repository = GitRepository.open(workingDir)) {
+                var workTree = repository.workTree();
+                if (workTree != null) {
+                    return workTree.toFile();
+                }
+            } catch (IOException ignored) {
+                // The directory is resolved on its own and left to the git CLI
+            }
+        }
+        return workingDir.getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    VersionSnapshot resolve() {
+        return Timings.time(rootDir, "snapshot", String.valueOf(workingDir), this::snapshot);
+    }
+
+    private VersionSnapshot snapshot() {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var statusFuture = executor.submit(this::status);
+            var tags = inProcessTags();
+            if (tags == null) {
+                tags = cliTags(executor, "HEAD");
+            }
+            var status = join(statusFuture);
+            var commit = status.commit();
+            if (commit == null || commit.equals("(initial)")) {
+                throw new RuntimeException("Could not determine the current commit; does the repository have any commits?");
+            }
+            if (!commit.equals(tags.commit())) {
+                // HEAD moved while the probes were running; settle on the commit status saw
+                tags = cliTags(executor, commit);
+            }
+            if (combined) {
+                var dirty = status.stagedChanges() || status.unstagedChanges();
+                return new VersionSnapshot(commit, tags.tagCommit(), tags.tagVersion(), tags.timestamp(), dirty, dirty);
+            }
+            return new VersionSnapshot(commit, tags.tagCommit(), tags.tagVersion(), tags.timestamp(), status.stagedChanges(), status.unstagedChanges());
+        }
+    }
+
+    private @Nullable Tags inProcessTags() {
+        if (!inProcess || workingDir == null) {
+            return null;
+        }
+        var cache = cacheDir == null ? null : new VersionCache(cacheDir, workingDir);
+        try (var timer = Timings.start(rootDir, "tags", workingDir.toString());
+             var repository = GitRepository.open(workingDir, cache == null ? null : cache.tagIndexFile())) {
+            var commit = repository.head();
+            var key = repository.stateKey();
+            var cached = cache == null ? null : cache.read();
+            var hit = cached != null && key != null && cached.key().equals(key) && cached.commit().equals(commit);
+            if (cache != null) {
+                timer.cacheHit(hit);
+            }
+            if (hit) {
+                return tags(commit, cached.tagCommit(), cached.tag(), cached.timestamp());
+            }
+            String tagCommit;
+            String tag;
+            if (cached != null && key != null && refsKey(cached.key()).equals(refsKey(key)) && !cached.tag().isEmpty() && repository.hasSameDescription(commit, cached.commit())) {
+                tagCommit = cached.tagCommit();
+                tag = cached.tag();
+            } else {
+                var description = repository.describe(commit);
+                tagCommit = description.map(GitRepository.Description::commit).orElse(commit);
+                tag = description.map(GitRepository.Description::tag).orElse("");
+            }
+            var timestamp = repository.authorTime(commit);
+            if (cache != null && key != null && key.startsWith(commit)) {
+                cache.write(new VersionCache.Entry(key, commit, tagCommit, tag, timestamp));
+            }
+            return tags(commit, tagCommit, tag, timestamp);
+        } catch (IOException ignored) {
+            // Anything the in-process reader does not understand is left to the git CLI
+            return null;
+        }
+    }
+
+    private static Tags tags(String commit, String tagCommit, String tag, long timestamp) {
+        return new Tags(commit, tagCommit, tagCommit.equals(commit) ? "" : tag, timestamp);
+    }
+
+    private static String refsKey(String key) {
+        int separator = key.indexOf(';');
+        return separator < 0 ? "" : key.substring(separator);
+    }
+
+    private Tags cliTags(ExecutorService executor, String revision) {
+        var tagNameFuture = executor.submit(() -> value(List.of("describe", "--tags", "--abbrev=0", "--always", revision)));
+        try {
+            var worker = GitWorker.of(workingDir == null ? new File(".") : workingDir);
+            var head = worker.commit(revision);
+            var tagCommit = worker.commit(join(tagNameFuture)).hash();
+            var tagVersion = tagCommit.equals(head.hash()) ? "" : value(List.of("describe", "--tags", tagCommit));
+            return new Tags(head.hash(), tagCommit, tagVersion, head.authorTime());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read commits with `git cat-file --batch`", e);
+        }
+    }
+
+    static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Status status() {
+        if (inProcess && workingDir != null) {
+            try (var timer = Timings.start(rootDir, "status", workingDir.toString());
+                 var repository = GitRepository.open(workingDir)) {
+                var watcher = watch ? WorkTreeWatcher.of(repository) : null;
+                if (watcher != null) {
+                    var flags = watcher.current(repository.head(), combined);
+                    timer.cacheHit(flags != null);
+                    if (flags != null) {
+                        return new Status(flags.commit(), flags.stagedChanges(), flags.unstagedChanges());
+                    }
+                }
+                var mark = watcher == null ? null : watcher.mark();
+                var result = DirtyChecker.check(repository, combined);
+                if (result != null) {
+                    // Only untracked files are left for git to find, and they cannot change the answer once it is settled
+                    var settled = result.unstagedChanges() || (combined && result.stagedChanges());
+                    var unstaged = settled ? result.unstagedChanges() : hasUntracked();
+                    if (watcher != null) {
+                        watcher.record(mark, result.commit(), combined, result.stagedChanges(), unstaged);
+                    }
+                    return new Status(result.commit(), result.stagedChanges(), unstaged);
+                }
+            } catch (IOException ignored) {
+                // Fall back to `git status` for anything the index reader does not understand
+            }
+        }
+        var args = List.of("--no-optional-locks", "status", "--porcelain=v2", "--branch", "--untracked-files=normal");
+        var err = new ByteArrayOutputStream();
+        try (var timer = Timings.start(rootDir, "git", "git " + String.join(" ", args));
+             var out = new StatusOutput(combined)) {
+            execOperations.exec(spec -> {
+                spec.setExecutable("git");
+                spec.setArgs(args);
+                spec.setStandardOutput(out);
+                spec.setErrorOutput(err);
+                if (workingDir != null) {
+                    spec.setWorkingDir(workingDir);
+                }
+            });
+            timer.bytes(out.size());
+            return new Status(out.commit(), out.stagedChanges(), out.unstagedChanges());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute git command `git "+String.join(" ", args)+"`: " + err.toString().trim(), e);
+        }
+    }
+
+    private boolean hasUntracked() {
+        var args = List.of("--no-optional-locks", "ls-files", "--others", "--exclude-standard", "--directory", "--no-empty-directory", "--", ":/");
+        var err = new ByteArrayOutputStream();
+        try (var timer = Timings.start(rootDir, "git", "git " + String.join(" ", args));
+             var out = new NonEmptyOutput()) {
+            execOperations.exec(spec -> {
+                spec.setExecutable("git");
+                spec.setArgs(args);
+                spec.setStandardOutput(out);
+                spec.setErrorOutput(err);
+                if (workingDir != null) {
+                    spec.setWorkingDir(workingDir);
+                }
+            });
+            timer.bytes(out.size());
+            return !out.isEmpty();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute git command `git "+String.join(" ", args)+"`: " + err.toString().trim(), e);
+        }
+    }
+
+    private String value(List<String> args) {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+        try (var timer = Timings.start(rootDir, "git", "git " + String.join(" ", args))) {
+            execOperations.exec(spec -> {
+                spec.setExecutable("git");
+                spec.setArgs(args);
+                spec.setStandardOutput(out);
+                spec.setErrorOutput(err);
+                if (workingDir != null) {
+                    spec.setWorkingDir(workingDir);
+                }
+            });
+            timer.bytes(out.size());
+            return out.toString().trim();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to execute git command `git "+String.join(" ", args)+"`: " + err.toString().trim(), e);
+        }
+    }
+
+    private record Status(@Nullable String commit, boolean stagedChanges, boolean unstagedChanges) {}
+
+    private record Tags(String commit, String tagCommit, String tagVersion, long timestamp) {}
+}
@@ -0,0 +1,101 @@
+package dev.lukebemish.managedversioning.git;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+final class StatusOutput extends OutputStream {
+    private static final String BRANCH_OID = "# branch.oid ";
+    private static final int MAX_LINE = 128;
+
+    private final byte[] line = new byte[MAX_LINE];
+    private final boolean combined;
+    private int length;
+    private long size;
+    private @Nullable String commit;
+    private boolean stagedChanges;
+    private boolean unstagedChanges;
+
+    StatusOutput(boolean combined) {
+        this.combined = combined;
+    }
+
+    @Override
+    public void write(int b) {
+        size++;
+        accept(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) {
+        size += count;
+        if (isSettled()) {
+            return;
+        }
+        for (int i = offset; i < offset + count; i++) {
+            accept(bytes[i]);
+        }
+    }
+
+    private void accept(int b) {
+        if (b == '\n') {
+            handleLine();
+            length = 0;
+        } else if (length < MAX_LINE) {
+            line[length++] = (byte) b;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (length > 0) {
+            handleLine();
+            length = 0;
+        }
+    }
+
+    private boolean isSettled() {
+        if (commit == null) {
+            return false;
+        }
+        return combined ? stagedChanges || unstagedChanges : stagedChanges && unstagedChanges;
+    }
+
+    private void handleLine() {
+        if (length < 2) {
+            return;
+        }
+        var kind = (char) line[0];
+        if (kind == '#') {
+            var text = new String(line, 0, length, StandardCharsets.US_ASCII);
+            if (text.startsWith(BRANCH_OID)) {
+                commit = text.substring(BRANCH_OID.length()).trim();
+            }
+        } else if ((kind == '1' || kind == '2') && length >= 4) {
+            stagedChanges |= line[2] != '.';
+            unstagedChanges |= line[3] != '.';
+        } else if (kind == 'u') {
+            stagedChanges = true;
+            unstagedChanges = true;
+        } else if (kind == '?') {
+            unstagedChanges = true;
+        }
+    }
+
+    @Nullable String commit() {
+        return commit;
+    }
+
+    boolean stagedChanges() {
+        return stagedChanges;
+    }
+
+    boolean unstagedChanges() {
+        return unstagedChanges;
+    }
+
+    long size() {
+        return size;
+    }
+}
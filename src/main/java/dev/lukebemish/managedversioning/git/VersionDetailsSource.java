@@ -0,0 +1,118 @@
+package dev.lukebemish.managedversioning.git;
+
+import dev.lukebemish.managedversioning.VersionFileSource;
+import dev.lukebemish.managedversioning.Versions;
+import dev.lukebemish.managedversioning.impl.VersionDetails;
+import org.gradle.api.Describable;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+import org.gradle.process.ExecOperations;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public abstract class VersionDetailsSource implements ValueSource<Map<File, VersionDetails>, VersionDetailsSource.Parameters>, Describable {
+    private final ExecOperations execOperations;
+
+    @Inject
+    public VersionDetailsSource(ExecOperations execOperations) {
+        this.execOperations = execOperations;
+    }
+
+    @Override
+    public final Map<File, VersionDetails> obtain() {
+        var inProcess = getParameters().getInProcess().getOrElse(true);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var roots = new LinkedHashMap<File, Future<File>>();
+            for (var workingDir : getParameters().getWorkingDirs().getFiles()) {
+                roots.put(workingDir, executor.submit(() -> SnapshotResolver.workTree(workingDir, inProcess)));
+            }
+            // Directories in the same repository share one resolution, and so one snapshot instance
+            var resolutions = new HashMap<File, Future<VersionSnapshot>>();
+            for (var root : roots.values()) {
+                resolutions.computeIfAbsent(SnapshotResolver.join(root), workTree -> executor.submit(() -> snapshot(workTree, inProcess)));
+            }
+            var details = new LinkedHashMap<File, VersionDetails>();
+            for (var entry : roots.entrySet()) {
+                details.put(entry.getKey(), details(entry.getKey(), SnapshotResolver.join(resolutions.get(SnapshotResolver.join(entry.getValue())))));
+            }
+            return details;
+        }
+    }
+
+    private VersionSnapshot snapshot(File workTree, boolean inProcess) {
+        var combined = !getParameters().getSeparateDirtyStates().getOrElse(true);
+        var resolver = new SnapshotResolver(
+            execOperations,
+            getParameters().getRootDir().isPresent() ? getParameters().getRootDir().get().getAsFile() : null,
+            workTree,
+            getParameters().getCacheDir().isPresent() ? getParameters().getCacheDir().get().getAsFile() : null,
+            inProcess,
+            combined,
+            getParameters().getWatch().getOrElse(false)
+        );
+        return SharedSnapshots.resolve(workTree, inProcess, combined, resolver::resolve);
+    }
+
+    // Worked out just as each build works out its own version, with this build's suffix rules
+    private VersionDetails details(File workingDir, VersionSnapshot snapshot) {
+        var file = new File(workingDir, getParameters().getVersionFile().get());
+        var fromFile = VersionFileSource.read(file);
+        if (fromFile == null) {
+            throw new RuntimeException("Version file " + file + " has no version");
+        }
+        var tagHash = snapshot.tagCommit().equals(snapshot.commit()) ? "" : snapshot.tagCommit();
+        var tagVersion = tagHash.isEmpty() ? "" : snapshot.tagVersion();
+        if (getParameters().getHasMetadata().getOrElse(false)) {
+            tagVersion = Versions.stripMetadata(tagVersion);
+        }
+        var version = Versions.version(
+            fromFile,
+            snapshot.commit(),
+            tagHash,
+            tagVersion,
+            getParameters().getSuffixParts().get(),
+            snapshot.stagedChanges(),
+            snapshot.unstagedChanges(),
+            getParameters().getStagedChangesVersionSuffix().get(),
+            getParameters().getUnstagedChangesVersionSuffix().get()
+        );
+        return new VersionDetails(
+            snapshot.commit(),
+            tagHash,
+            Long.toString(snapshot.timestamp()),
+            fromFile,
+            snapshot.stagedChanges(),
+            snapshot.unstagedChanges(),
+            version
+        );
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "git state of " + getParameters().getWorkingDirs().getFiles().size() + " working directories";
+    }
+
+    public interface Parameters extends ValueSourceParameters {
+        Property<Boolean> getInProcess();
+        ConfigurableFileCollection getWorkingDirs();
+        DirectoryProperty getRootDir();
+        DirectoryProperty getCacheDir();
+        Property<Boolean> getSeparateDirtyStates();
+        Property<Boolean> getWatch();
+        Property<String> getVersionFile();
+        Property<Boolean> getHasMetadata();
+        Property<String> getStagedChangesVersionSuffix();
+        Property<String> getUnstagedChangesVersionSuffix();
+        ListProperty<String> getSuffixParts();
+    }
+}
@@ -0,0 +1,12 @@
+package dev.lukebemish.managedversioning.git;
+
+import java.io.Serializable;
+
+public record VersionSnapshot(
+    String commit,
+    String tagCommit,
+    String tagVersion,
+    long timestamp,
+    boolean stagedChanges,
+    boolean unstagedChanges
+) implements Serializable {}
@@ -0,0 +1,101 @@
+package dev.lukebemish.managedversioning.git;
+
+import dev.lukebemish.managedversioning.impl.VersionCache;
+import org.gradle.api.Describable;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+import org.gradle.process.ExecOperations;
+import org.jetbrains.annotations.Nullable;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+
+public abstract class VersionSnapshotSource implements ValueSource<VersionSnapshot, VersionSnapshotSource.Parameters>, Describable {
+    private final ExecOperations execOperations;
+
+    @Inject
+    public VersionSnapshotSource(ExecOperations execOperations) {
+        this.execOperations = execOperations;
+    }
+
+    private @Nullable String changes;
+
+    @Override
+    public final VersionSnapshot obtain() {
+        var workingDir = getParameters().getWorkingDir().isPresent() ? getParameters().getWorkingDir().get().getAsFile() : null;
+        var inProcess = getParameters().getInProcess().getOrElse(true);
+        var combined = !getParameters().getSeparateDirtyStates().getOrElse(true);
+        var resolver = new SnapshotResolver(
+            execOperations,
+            getParameters().getRootDir().isPresent() ? getParameters().getRootDir().get().getAsFile() : null,
+            workingDir,
+            getParameters().getCacheDir().isPresent() ? getParameters().getCacheDir().get().getAsFile() : null,
+            inProcess,
+            combined,
+            getParameters().getWatch().getOrElse(false)
+        );
+        // Included builds of a composite often point at the same repository, so only the first of them resolves it
+        var snapshot = workingDir == null
+            ? resolver.resolve()
+            : SharedSnapshots.resolve(SnapshotResolver.workTree(workingDir, inProcess), inProcess, combined, resolver::resolve);
+        if (getParameters().getCacheDir().isPresent() && getParameters().getWorkingDir().isPresent()) {
+            var cache = new VersionCache(getParameters().getCacheDir().get().getAsFile(), getParameters().getWorkingDir().get().getAsFile());
+            var last = cache.readLast();
+            if (last != null) {
+                changes = describeChanges(last, snapshot);
+            }
+            if (!snapshot.equals(last)) {
+                cache.writeLast(snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String getDisplayName() {
+        var name = "git state of " + (getParameters().getWorkingDir().isPresent() ? getParameters().getWorkingDir().get().getAsFile() : "the working directory");
+        if (changes == null || changes.isEmpty()) {
+            return name;
+        }
+        return name + " (" + changes + ")";
+    }
+
+    private static String describeChanges(VersionSnapshot last, VersionSnapshot current) {
+        var changes = new ArrayList<String>();
+        if (!last.commit().equals(current.commit())) {
+            changes.add("HEAD moved from " + abbreviate(last.commit()) + " to " + abbreviate(current.commit()));
+        }
+        if (!last.tagCommit().equals(current.tagCommit()) || !last.tagVersion().equals(current.tagVersion())) {
+            changes.add("nearest tag changed from " + describeTag(last) + " to " + describeTag(current));
+        }
+        if (last.stagedChanges() != current.stagedChanges()) {
+            changes.add(current.stagedChanges() ? "staged changes appeared" : "staged changes were cleared");
+        }
+        if (last.unstagedChanges() != current.unstagedChanges()) {
+            changes.add(current.unstagedChanges() ? "unstaged changes appeared" : "unstaged changes were cleared");
+        }
+        return String.join(", ", changes);
+    }
+
+    private static String describeTag(VersionSnapshot snapshot) {
+        if (snapshot.tagCommit().equals(snapshot.commit())) {
+            return "HEAD";
+        }
+        return snapshot.tagVersion() + " at " + abbreviate(snapshot.tagCommit());
+    }
+
+    private static String abbreviate(String commit) {
+        return commit.length() > 7 ? commit.substring(0, 7) : commit;
+    }
+
+    public interface Parameters extends ValueSourceParameters {
+        Property<Boolean> getInProcess();
+        DirectoryProperty getWorkingDir();
+        DirectoryProperty getRootDir();
+        DirectoryProperty getCacheDir();
+        Property<Boolean> getSeparateDirtyStates();
+        Property<Boolean> getWatch();
+    }
+}
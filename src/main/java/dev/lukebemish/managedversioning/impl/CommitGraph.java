@@ -0,0 +1,198 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+final class CommitGraph implements AutoCloseable {
+    private static final int SIGNATURE = 0x43475048;
+    private static final int CHUNK_OID_FANOUT = 0x4f494446;
+    private static final int CHUNK_OID_LOOKUP = 0x4f49444c;
+    private static final int CHUNK_COMMIT_DATA = 0x43444154;
+    private static final int CHUNK_EXTRA_EDGES = 0x45444745;
+    private static final int PARENT_NONE = 0x70000000;
+    private static final int EXTRA_EDGE = 0x80000000;
+    private static final int HASH_LENGTH = 20;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final List<Layer> layers;
+
+    private CommitGraph(List<Layer> layers) {
+        this.layers = layers;
+    }
+
+    static @Nullable CommitGraph open(Path objects) throws IOException {
+        var info = objects.resolve("info");
+        var single = info.resolve("commit-graph");
+        if (Files.isRegularFile(single)) {
+            return new CommitGraph(List.of(Layer.open(single, 0)));
+        }
+        var chain = info.resolve("commit-graphs").resolve("commit-graph-chain");
+        if (Files.isRegularFile(chain)) {
+            var layers = new ArrayList<Layer>();
+            try {
+                int base = 0;
+                for (var line : Files.readAllLines(chain)) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    var layer = Layer.open(chain.resolveSibling("graph-" + line.trim() + ".graph"), base);
+                    layers.add(layer);
+                    base += layer.count;
+                }
+            } catch (IOException | RuntimeException e) {
+                layers.forEach(Layer::close);
+                throw e;
+            }
+            return layers.isEmpty() ? null : new CommitGraph(List.copyOf(layers));
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        layers.forEach(Layer::close);
+    }
+
+    @Nullable GitRepository.Commit read(byte[] id) throws IOException {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            var layer = layers.get(i);
+            int local = layer.find(id);
+            if (local >= 0) {
+                return commit(layer, local);
+            }
+        }
+        return null;
+    }
+
+    private GitRepository.Commit commit(Layer layer, int local) throws IOException {
+        var data = layer.commitData + local * (HASH_LENGTH + 16);
+        var buffer = layer.buffer;
+        int parent1 = buffer.getInt(data + HASH_LENGTH);
+        int parent2 = buffer.getInt(data + HASH_LENGTH + 4);
+        var parents = new ArrayList<String>(2);
+        if (parent1 != PARENT_NONE) {
+            parents.add(hash(parent1));
+        }
+        if ((parent2 & EXTRA_EDGE) != 0) {
+            if (layer.extraEdges < 0) {
+                throw new IOException("Commit graph references missing extra edges");
+            }
+            int edge = layer.extraEdges + (parent2 & ~EXTRA_EDGE) * 4;
+            int value;
+            do {
+                value = buffer.getInt(edge);
+                parents.add(hash(value & ~EXTRA_EDGE));
+                edge += 4;
+            } while ((value & EXTRA_EDGE) == 0);
+        } else if (parent2 != PARENT_NONE) {
+            parents.add(hash(parent2));
+        }
+        int high = buffer.getInt(data + HASH_LENGTH + 8);
+        long commitTime = ((long) (high & 0x3) << 32) | (buffer.getInt(data + HASH_LENGTH + 12) & 0xffffffffL);
+        long generation = high >>> 2;
+        if (generation == 0) {
+            generation = GitRepository.GENERATION_UNKNOWN;
+        }
+        return new GitRepository.Commit(layer.hash(local), List.copyOf(parents), commitTime, generation);
+    }
+
+    private String hash(int position) throws IOException {
+        for (var layer : layers) {
+            if (position >= layer.base && position < layer.base + layer.count) {
+                return layer.hash(position - layer.base);
+            }
+        }
+        throw new IOException("Commit graph position " + position + " is out of range");
+    }
+
+    private static final class Layer {
+        private final MappedByteBuffer buffer;
+        private final int base;
+        private final int count;
+        private final int fanout;
+        private final int lookup;
+        private final int commitData;
+        private final int extraEdges;
+
+        private Layer(MappedByteBuffer buffer, int base) throws IOException {
+            this.buffer = buffer;
+            this.base = base;
+            if (buffer.getInt(0) != SIGNATURE || buffer.get(4) != 1 || buffer.get(5) != 1) {
+                throw new IOException("Unsupported commit graph format");
+            }
+            int chunks = buffer.get(6) & 0xff;
+            int fanout = -1;
+            int lookup = -1;
+            int commitData = -1;
+            int extraEdges = -1;
+            for (int i = 0; i < chunks; i++) {
+                int entry = 8 + i * 12;
+                int id = buffer.getInt(entry);
+                int offset = Math.toIntExact(buffer.getLong(entry + 4));
+                switch (id) {
+                    case CHUNK_OID_FANOUT -> fanout = offset;
+                    case CHUNK_OID_LOOKUP -> lookup = offset;
+                    case CHUNK_COMMIT_DATA -> commitData = offset;
+                    case CHUNK_EXTRA_EDGES -> extraEdges = offset;
+                    default -> {}
+                }
+            }
+            if (fanout < 0 || lookup < 0 || commitData < 0) {
+                throw new IOException("Commit graph is missing required chunks");
+            }
+            this.fanout = fanout;
+            this.lookup = lookup;
+            this.commitData = commitData;
+            this.extraEdges = extraEdges;
+            this.count = buffer.getInt(fanout + 255 * 4);
+        }
+
+        static Layer open(Path file, int base) throws IOException {
+            var buffer = MappedFiles.map(file);
+            try {
+                return new Layer(buffer, base);
+            } catch (IOException | RuntimeException e) {
+                MappedFiles.unmap(buffer);
+                throw e;
+            }
+        }
+
+        void close() {
+            MappedFiles.unmap(buffer);
+        }
+
+        int find(byte[] id) {
+            int first = id[0] & 0xff;
+            int low = first == 0 ? 0 : buffer.getInt(fanout + (first - 1) * 4);
+            int high = buffer.getInt(fanout + first * 4);
+            var candidate = new byte[HASH_LENGTH];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                buffer.get(lookup + mid * HASH_LENGTH, candidate);
+                int cmp = Arrays.compareUnsigned(candidate, id);
+                if (cmp == 0) {
+                    return mid;
+                } else if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return -1;
+        }
+
+        String hash(int local) {
+            var bytes = new byte[HASH_LENGTH];
+            buffer.get(lookup + local * HASH_LENGTH, bytes);
+            return HEX.formatHex(bytes);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+public final class DirtyChecker {
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFREG = 0100000;
+    private static final int S_IFLNK = 0120000;
+    private static final int S_IFDIR = 0040000;
+    private static final int S_IFGITLINK = 0160000;
+    private static final String ATTRIBUTES = "unix:mode,ino,uid,gid,size,lastModifiedTime,ctime";
+
+    private final Path workTree;
+    private final GitIndex index;
+    private final boolean trustFileMode;
+    private final boolean trustCtime;
+    private final boolean minimalStat;
+    private final boolean mayConvert;
+
+    private DirtyChecker(Path workTree, GitIndex index, boolean trustFileMode, boolean trustCtime, boolean minimalStat, boolean mayConvert) {
+        this.workTree = workTree;
+        this.index = index;
+        this.trustFileMode = trustFileMode;
+        this.trustCtime = trustCtime;
+        this.minimalStat = minimalStat;
+        this.mayConvert = mayConvert;
+    }
+
+    // Untracked files are not considered; null means the answer could differ from `git status`
+    public static @Nullable Result check(GitRepository repository, boolean combined) throws IOException {
+        var workTree = repository.workTree();
+        if (workTree == null || System.getenv("GIT_WORK_TREE") != null || System.getenv("GIT_INDEX_FILE") != null) {
+            return null;
+        }
+        var config = repository.config();
+        if (config.getBoolean("core.bare", false) || config.get("core.worktree") != null
+            || config.getBoolean("core.ignorecase", false) || !config.getBoolean("core.symlinks", true)) {
+            return null;
+        }
+        var index = GitIndex.open(repository.gitDir().resolve("index"));
+        if (index == null) {
+            return null;
+        }
+        var commit = repository.head();
+        boolean mayConvert = false;
+        boolean intentToAdd = false;
+        for (var entry : index.entries()) {
+            int type = entry.mode() & S_IFMT;
+            if (type == S_IFGITLINK || type == S_IFDIR) {
+                // Submodules and sparse directories need more than a stat to compare
+                return null;
+            }
+            if (entry.stage() != 0) {
+                return new Result(commit, true, true);
+            }
+            intentToAdd |= entry.intentToAdd();
+            mayConvert |= entry.path().equals(".gitattributes") || entry.path().endsWith("/.gitattributes");
+        }
+        var autocrlf = config.get("core.autocrlf");
+        mayConvert |= (autocrlf != null && !autocrlf.equalsIgnoreCase("false"))
+            || config.get("core.attributesfile") != null
+            || Files.exists(repository.commonDir().resolve("info").resolve("attributes"))
+            || Files.exists(GitConfig.globalAttributes());
+        var checkStat = config.get("core.checkstat");
+        var checker = new DirtyChecker(
+            workTree,
+            index,
+            config.getBoolean("core.filemode", true),
+            config.getBoolean("core.trustctime", true),
+            checkStat != null && checkStat.toLowerCase(Locale.ROOT).equals("minimal"),
+            mayConvert
+        );
+        boolean staged = checker.stagedChanges(repository, commit);
+        if (intentToAdd || (combined && staged)) {
+            return new Result(commit, staged, intentToAdd);
+        }
+        var unstaged = checker.unstagedChanges();
+        return unstaged == null ? null : new Result(commit, staged, unstaged);
+    }
+
+    private boolean stagedChanges(GitRepository repository, String commit) throws IOException {
+        var tree = repository.tree(commit);
+        if (Arrays.equals(index.rootTree(), tree)) {
+            return false;
+        }
+        var head = new HashMap<String, TreeEntry>();
+        flatten(repository, tree, "", head);
+        int matched = 0;
+        for (var entry : index.entries()) {
+            if (entry.intentToAdd()) {
+                continue;
+            }
+            var expected = head.get(entry.path());
+            if (expected == null || expected.mode() != entry.mode() || !Arrays.equals(expected.id(), entry.id())) {
+                return true;
+            }
+            matched++;
+        }
+        return matched != head.size();
+    }
+
+    private static void flatten(GitRepository repository, byte[] tree, String prefix, Map<String, TreeEntry> entries) throws IOException {
+        var object = repository.readObject(tree);
+        if (object.type() != GitRepository.OBJ_TREE) {
+            throw new IOException("Object is not a tree");
+        }
+        var data = object.data();
+        int position = 0;
+        while (position < data.length) {
+            int mode = 0;
+            while (data[position] != ' ') {
+                mode = (mode << 3) | (data[position++] - '0');
+            }
+            int nul = position + 1;
+            while (data[nul] != 0) {
+                nul++;
+            }
+            var path = prefix + new String(data, position + 1, nul - position - 1, StandardCharsets.UTF_8);
+            var id = Arrays.copyOfRange(data, nul + 1, nul + 21);
+            position = nul + 21;
+            if ((mode & S_IFMT) == S_IFDIR) {
+                flatten(repository, id, path + "/", entries);
+            } else {
+                if ((mode & S_IFMT) == S_IFREG) {
+                    // Old trees may record group-writable modes, which git canonicalizes
+                    mode = (mode & 0100) != 0 ? 0100755 : 0100644;
+                }
+                entries.put(path, new TreeEntry(mode, id));
+            }
+        }
+    }
+
+    private @Nullable Boolean unstagedChanges() throws IOException {
+        var entries = index.entries();
+        var uncertain = new AtomicBoolean();
+        boolean dirty;
+        try {
+            dirty = IntStream.range(0, entries.size()).parallel().anyMatch(i -> {
+                try {
+                    return switch (compare(entries.get(i))) {
+                        case CLEAN -> false;
+                        case DIRTY -> true;
+                        case UNCERTAIN -> {
+                            uncertain.set(true);
+                            yield true;
+                        }
+                    };
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return uncertain.get() ? null : dirty;
+    }
+
+    private State compare(GitIndex.Entry entry) throws IOException {
+        if (entry.skipWorktree() || entry.assumeValid()) {
+            return State.CLEAN;
+        }
+        var file = workTree.resolve(entry.path());
+        Map<String, Object> attributes;
+        try {
+            attributes = Files.readAttributes(file, ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return State.DIRTY;
+        } catch (FileSystemException e) {
+            // ENOTDIR when a leading path component has been replaced by a file
+            return Files.exists(file, LinkOption.NOFOLLOW_LINKS) ? State.UNCERTAIN : State.DIRTY;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return State.UNCERTAIN;
+        }
+        int mode = (Integer) attributes.get("mode");
+        int type = entry.mode() & S_IFMT;
+        if ((mode & S_IFMT) != type) {
+            return State.DIRTY;
+        }
+        if (type == S_IFREG && trustFileMode && ((mode ^ entry.mode()) & 0100) != 0) {
+            return State.DIRTY;
+        }
+        var modified = (FileTime) attributes.get("lastModifiedTime");
+        var changed = (int) modified.toInstant().getEpochSecond() != entry.mtimeSeconds();
+        if (!minimalStat) {
+            changed |= modified.toInstant().getNano() != entry.mtimeNanos();
+            if (trustCtime) {
+                var created = ((FileTime) attributes.get("ctime")).toInstant();
+                changed |= (int) created.getEpochSecond() != entry.ctimeSeconds() || created.getNano() != entry.ctimeNanos();
+            }
+            changed |= (int) (long) (Long) attributes.get("ino") != entry.ino();
+            changed |= (Integer) attributes.get("uid") != entry.uid();
+            changed |= (Integer) attributes.get("gid") != entry.gid();
+        }
+        if ((int) (long) (Long) attributes.get("size") != entry.size()) {
+            if (entry.size() != 0) {
+                return State.DIRTY;
+            }
+            // Racily-clean entries are written with a zero size so they never match by stat alone
+            changed = true;
+        }
+        boolean racy = Integer.toUnsignedLong(entry.mtimeSeconds()) >= index.timestamp();
+        if (!changed && !racy) {
+            return State.CLEAN;
+        }
+        if (type == S_IFREG && mayConvert) {
+            return State.UNCERTAIN;
+        }
+        return Arrays.equals(hash(file, type == S_IFLNK), entry.id()) ? State.CLEAN : State.DIRTY;
+    }
+
+    private static byte[] hash(Path file, boolean link) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        if (link) {
+            var target = Files.readSymbolicLink(file).toString().getBytes(StandardCharsets.UTF_8);
+            digest.update(("blob " + target.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            digest.update(target);
+            return digest.digest();
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+            long size = channel.size();
+            digest.update(("blob " + size + "\0").getBytes(StandardCharsets.US_ASCII));
+            var buffer = ByteBuffer.allocate((int) Math.min(Math.max(size, 1), 64 * 1024));
+            long read = 0;
+            int count;
+            while ((count = channel.read(buffer)) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+                read += count;
+                if (read > size) {
+                    break;
+                }
+            }
+            if (read != size) {
+                // The file changed while it was read; it cannot match what the index recorded
+                return new byte[0];
+            }
+        }
+        return digest.digest();
+    }
+
+    public record Result(String commit, boolean stagedChanges, boolean unstagedChanges) {}
+
+    private record TreeEntry(int mode, byte[] id) {}
+
+    private enum State {
+        CLEAN,
+        DIRTY,
+        UNCERTAIN
+    }
+}
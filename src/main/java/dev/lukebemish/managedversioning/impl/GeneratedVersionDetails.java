@@ -2,8 +2,8 @@
 
 import dev.lukebemish.managedversioning.VersionFileSource;
 import dev.lukebemish.managedversioning.VersionValueSource;
-import dev.lukebemish.managedversioning.git.GitResultSource;
-import dev.lukebemish.managedversioning.git.GitValueSource;
+import dev.lukebemish.managedversioning.git.VersionSnapshot;
+import dev.lukebemish.managedversioning.git.VersionSnapshotSource;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.provider.Provider;
@@ -18,7 +18,8 @@ public record GeneratedVersionDetails(
     Provider<String> fromFile,
     Provider<Boolean> stagedChanges,
     Provider<Boolean> unstagedChanges,
-    Provider<String> version
+    Provider<String> version,
+    Provider<VersionDetails> details
 ) {
     public Provider<Boolean> getTagUpToDate() {
         return getVersionUpToDate().zip(tagHash().zip(gitHash(), String::equals), Boolean::logicalAnd);
@@ -31,50 +32,34 @@ public Provider<Boolean> getVersionUpToDate() {
     public static GeneratedVersionDetails make(
         ProviderFactory providers,
         Provider<Directory> gitWorkingDir,
+        Provider<Boolean> inProcessGit,
+        Directory rootDir,
+        Directory cacheDir,
+        Provider<Boolean> separateDirtyStates,
+        Provider<Boolean> watchGitWorkingDir,
         Provider<RegularFile> versionFile,
         Provider<String> metadataVersion,
         Provider<String> stagedChangesVersionSuffix,
         Provider<String> unstagedChangesVersionSuffix,
         Provider<List<String>> suffixParts
     ) {
-        var gitHash = providers.of(GitValueSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("rev-parse", "HEAD"));
-            spec.getParameters().getWorkingDir().set(gitWorkingDir);
-        });
-        var tagName = providers.of(GitValueSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("describe", "--tags", "--abbrev=0", "--always"));
-            spec.getParameters().getWorkingDir().set(gitWorkingDir);
-        });
-        var tagHash = providers.of(GitValueSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("rev-list", "-n", "1"));
-            spec.getParameters().getArgs().add(tagName);
-            spec.getParameters().getWorkingDir().set(gitWorkingDir);
-        }).zip(gitHash, (s, g) -> s.equals(g) ? "" : s);
-        var gitTimestamp = providers.of(GitValueSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("log", "-1", "--format=%at"));
+        var snapshot = providers.of(VersionSnapshotSource.class, spec -> {
+            spec.getParameters().getInProcess().set(inProcessGit);
             spec.getParameters().getWorkingDir().set(gitWorkingDir);
+            spec.getParameters().getRootDir().set(rootDir);
+            spec.getParameters().getCacheDir().set(cacheDir);
+            spec.getParameters().getSeparateDirtyStates().set(separateDirtyStates);
+            spec.getParameters().getWatch().set(watchGitWorkingDir);
         });
+        var gitHash = snapshot.map(VersionSnapshot::commit);
+        var tagHash = snapshot.map(s -> s.tagCommit().equals(s.commit()) ? "" : s.tagCommit());
+        var gitTimestamp = snapshot.map(s -> Long.toString(s.timestamp()));
+        var stagedChanges = snapshot.map(VersionSnapshot::stagedChanges);
+        var unstagedChanges = snapshot.map(VersionSnapshot::unstagedChanges);
         var fromFile = providers.of(VersionFileSource.class, spec -> {
             spec.getParameters().getVersionFile().set(versionFile);
         });
 
-        var stagedChanges = providers.of(GitResultSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("diff-index", "--quiet", "--cached", "HEAD", "--"));
-            spec.getParameters().getWorkingDir().set(gitWorkingDir);
-        }).map(i -> i == 1);
-
-        var untracked = providers.of(GitValueSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("ls-files", "--exclude-standard", "--others"));
-            spec.getParameters().getWorkingDir().set(gitWorkingDir);
-        });
-
-        var tracked = providers.of(GitResultSource.class, spec -> {
-            spec.getParameters().getArgs().set(List.of("diff-files", "--quiet"));
-            spec.getParameters().getWorkingDir().set(gitWorkingDir);
-        });
-
-        var unstagedChanges = tracked.zip(untracked, (t, u) -> t == 1 || !u.isBlank());
-
         var version = providers.of(VersionValueSource.class, spec -> {
             var ps = spec.getParameters();
             ps.getCommitHash().set(gitHash);
@@ -84,11 +69,39 @@ public static GeneratedVersionDetails make(
             ps.getSuffixParts().set(suffixParts);
             ps.getFromFile().set(fromFile);
             ps.getWorkingDir().set(gitWorkingDir);
+            ps.getRootDir().set(rootDir);
+            ps.getInProcess().set(inProcessGit);
             ps.getTagHash().set(tagHash);
+            ps.getTagVersion().set(snapshot.map(VersionSnapshot::tagVersion));
             ps.getStagedChanges().set(stagedChanges);
             ps.getUnstagedChanges().set(unstagedChanges);
         });
 
-        return new GeneratedVersionDetails(gitHash, tagHash, gitTimestamp, fromFile, stagedChanges, unstagedChanges, version);
+        var details = snapshot.zip(fromFile, (s, f) -> new VersionDetails(
+            s.commit(),
+            s.tagCommit().equals(s.commit()) ? "" : s.tagCommit(),
+            Long.toString(s.timestamp()),
+            f,
+            s.stagedChanges(),
+            s.unstagedChanges(),
+            ""
+        )).zip(version, VersionDetails::withVersion);
+
+        return new GeneratedVersionDetails(gitHash, tagHash, gitTimestamp, fromFile, stagedChanges, unstagedChanges, version, details);
+    }
+
+    // Every project reads the same isolated record, so configuring a project never evaluates the git sources itself
+    public static GeneratedVersionDetails shared(Provider<VersionDetailsService> service) {
+        var details = service.map(s -> s.getParameters().getDetails().get());
+        return new GeneratedVersionDetails(
+            details.map(VersionDetails::gitHash),
+            details.map(VersionDetails::tagHash),
+            details.map(VersionDetails::gitTimestamp),
+            details.map(VersionDetails::fromFile),
+            details.map(VersionDetails::stagedChanges),
+            details.map(VersionDetails::unstagedChanges),
+            details.map(VersionDetails::version),
+            details
+        );
     }
 }
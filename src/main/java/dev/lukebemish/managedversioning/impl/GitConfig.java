@@ -0,0 +1,220 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+final class GitConfig {
+    private static final String TRUE = "true";
+
+    private final Map<String, String> values;
+
+    private GitConfig(Map<String, String> values) {
+        this.values = values;
+    }
+
+    static GitConfig load(Path gitDir, Path commonDir) throws IOException {
+        for (var variable : List.of("GIT_CONFIG", "GIT_CONFIG_GLOBAL", "GIT_CONFIG_SYSTEM", "GIT_CONFIG_COUNT", "GIT_CONFIG_PARAMETERS")) {
+            if (System.getenv(variable) != null) {
+                throw new IOException("Git configuration is overridden by the environment");
+            }
+        }
+        var values = new HashMap<String, String>();
+        var files = files(gitDir, commonDir);
+        for (var file : files.subList(0, files.size() - 1)) {
+            parse(file, values);
+        }
+        if (isTrue(values.get("extensions.worktreeconfig"))) {
+            parse(files.getLast(), values);
+        }
+        return new GitConfig(values);
+    }
+
+    static List<Path> files(Path gitDir, Path commonDir) {
+        var files = new ArrayList<Path>();
+        if (System.getenv("GIT_CONFIG_NOSYSTEM") == null) {
+            files.add(Path.of("/etc/gitconfig"));
+        }
+        files.add(xdgConfig("config"));
+        files.add(Path.of(System.getProperty("user.home"), ".gitconfig"));
+        files.add(commonDir.resolve("config"));
+        files.add(gitDir.resolve("config.worktree"));
+        return files;
+    }
+
+    Path excludesFile() {
+        var configured = values.get("core.excludesfile");
+        if (configured == null) {
+            return xdgConfig("ignore");
+        } else if (configured.startsWith("~/")) {
+            return Path.of(System.getProperty("user.home"), configured.substring(2));
+        }
+        return Path.of(configured);
+    }
+
+    @Nullable String get(String key) {
+        return values.get(key);
+    }
+
+    boolean getBoolean(String key, boolean defaultValue) throws IOException {
+        var value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "on", "1" -> true;
+            case "false", "no", "off", "0", "" -> false;
+            default -> throw new IOException("Invalid boolean value for " + key + ": " + value);
+        };
+    }
+
+    static Path globalAttributes() {
+        return xdgConfig("attributes");
+    }
+
+    private static Path xdgConfig(String name) {
+        var xdg = System.getenv("XDG_CONFIG_HOME");
+        if (xdg != null && !xdg.isEmpty()) {
+            return Path.of(xdg, "git", name);
+        }
+        return Path.of(System.getProperty("user.home"), ".config", "git", name);
+    }
+
+    private static boolean isTrue(@Nullable String value) {
+        return value != null && switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "on", "1" -> true;
+            default -> false;
+        };
+    }
+
+    private static void parse(Path file, Map<String, String> values) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        var text = Files.readString(file);
+        var section = "";
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == ' ' || c == '\t') {
+                i++;
+            } else if (c == '#' || c == ';') {
+                i = lineEnd(text, i);
+            } else if (c == '[') {
+                int end = text.indexOf(']', i);
+                if (end < 0) {
+                    throw new IOException("Invalid section header in " + file);
+                }
+                section = sectionName(text.substring(i + 1, end), file);
+                if (section.equals("include") || section.startsWith("includeif.")) {
+                    throw new IOException("Config includes are not supported in-process");
+                }
+                i = end + 1;
+            } else {
+                int nameEnd = i;
+                while (nameEnd < text.length() && (Character.isLetterOrDigit(text.charAt(nameEnd)) || text.charAt(nameEnd) == '-')) {
+                    nameEnd++;
+                }
+                if (nameEnd == i) {
+                    throw new IOException("Invalid config line in " + file);
+                }
+                var name = section + "." + text.substring(i, nameEnd).toLowerCase(Locale.ROOT);
+                i = nameEnd;
+                while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+                    i++;
+                }
+                if (i < text.length() && text.charAt(i) == '=') {
+                    var value = new StringBuilder();
+                    i = value(text, i + 1, value, file);
+                    values.put(name, value.toString());
+                } else {
+                    values.put(name, TRUE);
+                    i = lineEnd(text, i);
+                }
+            }
+        }
+    }
+
+    private static String sectionName(String header, Path file) throws IOException {
+        int quote = header.indexOf('"');
+        if (quote < 0) {
+            // The deprecated [section.subsection] form lowercases the subsection too
+            return header.trim().toLowerCase(Locale.ROOT);
+        }
+        var subsection = new StringBuilder();
+        for (int i = quote + 1; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '\\' && i + 1 < header.length()) {
+                subsection.append(header.charAt(++i));
+            } else if (c == '"') {
+                return header.substring(0, quote).trim().toLowerCase(Locale.ROOT) + "." + subsection;
+            } else {
+                subsection.append(c);
+            }
+        }
+        throw new IOException("Invalid section header in " + file);
+    }
+
+    private static int value(String text, int i, StringBuilder value, Path file) throws IOException {
+        boolean quoted = false;
+        int trimmed = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                break;
+            } else if (!quoted && (c == '#' || c == ';')) {
+                i = lineEnd(text, i);
+                break;
+            } else if (c == '"') {
+                quoted = !quoted;
+                trimmed = value.length();
+            } else if (c == '\\') {
+                if (++i >= text.length()) {
+                    break;
+                }
+                switch (text.charAt(i)) {
+                    case '\n' -> {}
+                    case '\r' -> {
+                        if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                            i++;
+                        }
+                    }
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case '"', '\\' -> value.append(text.charAt(i));
+                    default -> throw new IOException("Invalid escape in " + file);
+                }
+                trimmed = value.length();
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                if (quoted) {
+                    value.append(c);
+                    trimmed = value.length();
+                } else if (value.length() > 0) {
+                    value.append(c);
+                }
+            } else {
+                value.append(c);
+                trimmed = value.length();
+            }
+            i++;
+        }
+        if (quoted) {
+            throw new IOException("Unterminated quote in " + file);
+        }
+        value.setLength(trimmed);
+        return i;
+    }
+
+    private static int lineEnd(String text, int i) {
+        int end = text.indexOf('\n', i);
+        return end < 0 ? text.length() : end;
+    }
+}
@@ -0,0 +1,228 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class GitIndex {
+    private static final int SIGNATURE = 0x44495243;
+    private static final int EXTENSION_TREE = 0x54524545;
+    private static final int HASH_LENGTH = 20;
+    private static final int FLAG_ASSUME_VALID = 0x8000;
+    private static final int FLAG_EXTENDED = 0x4000;
+    private static final int EXTENDED_SKIP_WORKTREE = 0x4000;
+    private static final int EXTENDED_INTENT_TO_ADD = 0x2000;
+
+    private final List<Entry> entries;
+    private final byte @Nullable [] rootTree;
+    private final long timestamp;
+
+    private GitIndex(List<Entry> entries, byte @Nullable [] rootTree, long timestamp) {
+        this.entries = entries;
+        this.rootTree = rootTree;
+        this.timestamp = timestamp;
+    }
+
+    static @Nullable GitIndex open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        // Read the timestamp first, so an index rewritten while reading only makes more entries look racy
+        var timestamp = Files.getLastModifiedTime(file).toMillis() / 1000;
+        // Read onto the heap rather than mapped: a mapping stays open until collected, and on Windows that stops git renaming index.lock over it
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int end = buffer.limit() - HASH_LENGTH;
+        if (end < 12 || buffer.getInt(0) != SIGNATURE) {
+            throw new IOException("Invalid index file " + file);
+        }
+        verify(buffer, end, file);
+        int version = buffer.getInt(4);
+        if (version < 2 || version > 4) {
+            throw new IOException("Unsupported index version " + version);
+        }
+        int count = buffer.getInt(8);
+        var entries = new ArrayList<Entry>(count);
+        var decoder = StandardCharsets.UTF_8.newDecoder();
+        var name = new byte[256];
+        int nameLength = 0;
+        int position = 12;
+        for (int i = 0; i < count; i++) {
+            int start = position;
+            int flags = buffer.getShort(start + 60) & 0xffff;
+            int extended = 0;
+            position = start + 62;
+            if ((flags & FLAG_EXTENDED) != 0) {
+                if (version < 3) {
+                    throw new IOException("Extended index entry in version 2 index");
+                }
+                extended = buffer.getShort(position) & 0xffff;
+                position += 2;
+            }
+            if (version == 4) {
+                int strip = 0;
+                int b;
+                do {
+                    b = buffer.get(position++) & 0xff;
+                    strip = (strip << 7) | (b & 0x7f);
+                    if ((b & 0x80) != 0) {
+                        strip++;
+                    }
+                } while ((b & 0x80) != 0);
+                if (strip > nameLength) {
+                    throw new IOException("Invalid path compression in index");
+                }
+                nameLength -= strip;
+            } else {
+                nameLength = 0;
+            }
+            int nul = position;
+            while (nul < end && buffer.get(nul) != 0) {
+                nul++;
+            }
+            if (nul >= end) {
+                throw new IOException("Truncated index entry");
+            }
+            int suffix = nul - position;
+            if (nameLength + suffix > name.length) {
+                name = Arrays.copyOf(name, Math.max(name.length * 2, nameLength + suffix));
+            }
+            buffer.get(position, name, nameLength, suffix);
+            nameLength += suffix;
+            position = version == 4 ? nul + 1 : start + ((nul - start + 8) & ~7);
+            var id = new byte[HASH_LENGTH];
+            buffer.get(start + 40, id);
+            entries.add(new Entry(
+                path(name, nameLength, decoder),
+                buffer.getInt(start + 24),
+                id,
+                (flags >> 12) & 0x3,
+                (flags & FLAG_ASSUME_VALID) != 0,
+                (extended & EXTENDED_SKIP_WORKTREE) != 0,
+                (extended & EXTENDED_INTENT_TO_ADD) != 0,
+                buffer.getInt(start),
+                buffer.getInt(start + 4),
+                buffer.getInt(start + 8),
+                buffer.getInt(start + 12),
+                buffer.getInt(start + 20),
+                buffer.getInt(start + 28),
+                buffer.getInt(start + 32),
+                buffer.getInt(start + 36)
+            ));
+        }
+        byte[] rootTree = null;
+        while (position + 8 <= end) {
+            int signature = buffer.getInt(position);
+            int size = buffer.getInt(position + 4);
+            position += 8;
+            if (signature == EXTENSION_TREE) {
+                rootTree = rootTree(buffer, position, position + size);
+            } else if (signature >>> 24 < 'A' || signature >>> 24 > 'Z') {
+                // Lowercase extensions (split index, sparse directories, ...) change what the entries mean
+                throw new IOException("Unsupported index extension " + new String(new byte[] {(byte) (signature >>> 24), (byte) (signature >>> 16), (byte) (signature >>> 8), (byte) signature}, StandardCharsets.US_ASCII));
+            }
+            position += size;
+        }
+        return new GitIndex(List.copyOf(entries), rootTree, timestamp);
+    }
+
+    List<Entry> entries() {
+        return entries;
+    }
+
+    byte @Nullable [] rootTree() {
+        return rootTree;
+    }
+
+    long timestamp() {
+        return timestamp;
+    }
+
+    private static void verify(ByteBuffer buffer, int end, Path file) throws IOException {
+        var expected = new byte[HASH_LENGTH];
+        buffer.get(end, expected);
+        if (Arrays.equals(expected, new byte[HASH_LENGTH])) {
+            // index.skipHash leaves the trailer zeroed
+            return;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        digest.update(buffer.slice(0, end));
+        if (!Arrays.equals(digest.digest(), expected)) {
+            throw new IOException("Index file " + file + " is corrupt or being written");
+        }
+    }
+
+    private static byte @Nullable [] rootTree(ByteBuffer buffer, int position, int end) {
+        // The root is the first cache-tree entry; its path is empty
+        if (position >= end || buffer.get(position) != 0) {
+            return null;
+        }
+        int space = position + 1;
+        while (space < end && buffer.get(space) != ' ') {
+            space++;
+        }
+        var entryCount = new byte[space - position - 1];
+        buffer.get(position + 1, entryCount);
+        if (entryCount.length == 0 || entryCount[0] == '-') {
+            return null;
+        }
+        int newline = space;
+        while (newline < end && buffer.get(newline) != '\n') {
+            newline++;
+        }
+        if (newline + 1 + HASH_LENGTH > end) {
+            return null;
+        }
+        var id = new byte[HASH_LENGTH];
+        buffer.get(newline + 1, id);
+        return id;
+    }
+
+    private static String path(byte[] name, int length, CharsetDecoder decoder) throws IOException {
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = name[i] >= 0;
+        }
+        if (ascii) {
+            return new String(name, 0, length, StandardCharsets.US_ASCII);
+        }
+        try {
+            return decoder.decode(ByteBuffer.wrap(name, 0, length)).toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException("Index contains a path that is not valid UTF-8", e);
+        }
+    }
+
+    record Entry(
+        String path,
+        int mode,
+        byte[] id,
+        int stage,
+        boolean assumeValid,
+        boolean skipWorktree,
+        boolean intentToAdd,
+        int ctimeSeconds,
+        int ctimeNanos,
+        int mtimeSeconds,
+        int mtimeNanos,
+        int ino,
+        int uid,
+        int gid,
+        int size
+    ) {}
+}
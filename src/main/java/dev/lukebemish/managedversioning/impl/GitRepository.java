@@ -0,0 +1,656 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.InflaterInputStream;
+
+public final class GitRepository implements AutoCloseable {
+    static final int OBJ_COMMIT = 1;
+    static final int OBJ_TREE = 2;
+    static final int OBJ_TAG = 4;
+
+    static final long GENERATION_UNKNOWN = Long.MAX_VALUE;
+
+    private static final int MAX_CANDIDATES = 10;
+    private static final int MAX_SHORTCUT_DEPTH = 10000;
+    private static final int SEEN = 1;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final long RACY_MILLIS = 2000;
+
+    private final Path gitDir;
+    private final Path commonDir;
+    private final @Nullable Path workTree;
+    private final List<Path> objectDirectories;
+    private final Set<String> shallow;
+    private final boolean useCommitGraph;
+    private final @Nullable Path tagIndexFile;
+    private final Map<String, Commit> commits = new HashMap<>();
+    private @Nullable List<PackFile> packs;
+    private @Nullable CommitGraph commitGraph;
+    private boolean commitGraphLoaded;
+    private @Nullable PackedRefs packedRefs;
+    private @Nullable Map<String, TagName> tagNames;
+
+    private GitRepository(Path gitDir, Path commonDir, @Nullable Path workTree, boolean useCommitGraph, @Nullable Path tagIndexFile) throws IOException {
+        this.gitDir = gitDir;
+        this.workTree = workTree;
+        this.tagIndexFile = tagIndexFile;
+        this.commonDir = commonDir;
+        this.objectDirectories = new ArrayList<>();
+        var objects = commonDir.resolve("objects");
+        objectDirectories.add(objects);
+        var alternates = objects.resolve("info").resolve("alternates");
+        if (Files.isRegularFile(alternates)) {
+            for (var line : Files.readAllLines(alternates)) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    objectDirectories.add(objects.resolve(line.trim()).normalize());
+                }
+            }
+        }
+        var shallowFile = commonDir.resolve("shallow");
+        this.shallow = Files.isRegularFile(shallowFile) ? Set.copyOf(Files.readAllLines(shallowFile)) : Set.of();
+        // Like git itself, ignore the commit graph when shallow boundaries rewrite parents
+        this.useCommitGraph = useCommitGraph && shallow.isEmpty();
+    }
+
+    public static GitRepository open(File workingDir) throws IOException {
+        return open(workingDir, null);
+    }
+
+    public static GitRepository open(File workingDir, @Nullable Path tagIndexFile) throws IOException {
+        if (System.getenv("GIT_DIR") != null || System.getenv("GIT_COMMON_DIR") != null || System.getenv("GIT_OBJECT_DIRECTORY") != null) {
+            throw new IOException("Git repository location is overridden by the environment");
+        }
+        var directory = workingDir.toPath().toAbsolutePath().normalize();
+        while (directory != null) {
+            var dotGit = directory.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                return open(dotGit, directory, tagIndexFile);
+            } else if (Files.isRegularFile(dotGit)) {
+                var contents = Files.readString(dotGit).trim();
+                if (!contents.startsWith("gitdir:")) {
+                    throw new IOException("Invalid gitfile at " + dotGit);
+                }
+                return open(directory.resolve(contents.substring("gitdir:".length()).trim()).normalize(), directory, tagIndexFile);
+            }
+            directory = directory.getParent();
+        }
+        throw new IOException("No git repository found at " + workingDir);
+    }
+
+    private static GitRepository open(Path gitDir, Path workTree, @Nullable Path tagIndexFile) throws IOException {
+        var commonDir = gitDir;
+        var commonDirFile = gitDir.resolve("commondir");
+        if (Files.isRegularFile(commonDirFile)) {
+            commonDir = gitDir.resolve(Files.readString(commonDirFile).trim()).normalize();
+        }
+        var config = commonDir.resolve("config");
+        boolean useCommitGraph = true;
+        if (Files.isRegularFile(config)) {
+            for (var line : Files.readAllLines(config)) {
+                var trimmed = line.trim().toLowerCase(Locale.ROOT);
+                if ((trimmed.startsWith("objectformat") && !trimmed.endsWith("sha1")) || (trimmed.startsWith("refstorage") && !trimmed.endsWith("files"))) {
+                    throw new IOException("Unsupported repository format: " + line.trim());
+                }
+                if (trimmed.startsWith("commitgraph") && trimmed.endsWith("false")) {
+                    useCommitGraph = false;
+                }
+            }
+        }
+        var repository = new GitRepository(gitDir, commonDir, workTree, useCommitGraph, tagIndexFile);
+        if (Files.isDirectory(commonDir.resolve("refs").resolve("replace")) || repository.packedRefs().hasPrefix("refs/replace/")) {
+            throw new IOException("Replace refs are not supported in-process");
+        }
+        return repository;
+    }
+
+    public String head() throws IOException {
+        return resolveRef("HEAD", 0);
+    }
+
+    public String resolve(String revision) throws IOException {
+        if (revision.length() == 40 && revision.chars().allMatch(GitRepository::isHex)) {
+            return revision;
+        }
+        for (var candidate : List.of(revision, "refs/" + revision, "refs/tags/" + revision, "refs/heads/" + revision)) {
+            var resolved = tryResolveRef(candidate, 0);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        throw new IOException("Unknown revision " + revision);
+    }
+
+    Path gitDir() {
+        return gitDir;
+    }
+
+    Path commonDir() {
+        return commonDir;
+    }
+
+    public @Nullable Path workTree() {
+        return workTree;
+    }
+
+    GitConfig config() throws IOException {
+        return GitConfig.load(gitDir, commonDir);
+    }
+
+    byte[] tree(String commit) throws IOException {
+        var object = readObject(HEX.parseHex(commit));
+        if (object.type() != OBJ_COMMIT) {
+            throw new IOException("Object " + commit + " is not a commit");
+        }
+        for (var line : headerLines(object.data())) {
+            if (line.startsWith("tree ")) {
+                return HEX.parseHex(line.substring("tree ".length()));
+            }
+        }
+        throw new IOException("Commit " + commit + " has no tree");
+    }
+
+    // Null while the refs are too freshly written for their stamps to be trusted, in which case nothing should be cached against them
+    public @Nullable String stateKey() throws IOException {
+        var refsKey = refsKey();
+        return refsKey == null ? null : head() + refsKey;
+    }
+
+    private @Nullable String refsKey() throws IOException {
+        var key = new StringBuilder();
+        // A rewrite within the file system's timestamp resolution can leave every stamp as it was, so stamps that recent are not trusted
+        long racy = System.currentTimeMillis() - RACY_MILLIS;
+        for (var file : List.of(commonDir.resolve("packed-refs"), commonDir.resolve("shallow"))) {
+            if (Files.isRegularFile(file) && !stamp(key.append(';').append(file.getFileName()).append('='), file, racy)) {
+                return null;
+            }
+        }
+        var tagsDir = commonDir.resolve("refs").resolve("tags");
+        if (Files.isDirectory(tagsDir)) {
+            try (Stream<Path> directories = Files.walk(tagsDir)) {
+                for (var directory : (Iterable<Path>) directories.filter(Files::isDirectory).sorted()::iterator) {
+                    if (!stamp(key.append(";tags/").append(tagsDir.relativize(directory)).append('='), directory, racy)) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean stamp(StringBuilder key, Path file, long racy) throws IOException {
+        // Git replaces ref files by renaming a lock file over them, so the file key changes even when size and time do not
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        key.append(attributes.lastModifiedTime()).append(':').append(attributes.size()).append(':').append(attributes.fileKey());
+        return attributes.lastModifiedTime().toMillis() < racy;
+    }
+
+    public long authorTime(String commit) throws IOException {
+        var object = readObject(HEX.parseHex(commit));
+        if (object.type() != OBJ_COMMIT) {
+            throw new IOException("Object " + commit + " is not a commit");
+        }
+        for (var line : headerLines(object.data())) {
+            if (line.startsWith("author ")) {
+                return identityTime(line);
+            }
+        }
+        return 0;
+    }
+
+    public boolean hasSameDescription(String commit, String base) throws IOException {
+        // An untagged commit with a single parent walks exactly like that parent, one step later
+        var names = tagNames();
+        var target = commit(base);
+        var current = commit;
+        for (int i = 0; i < MAX_SHORTCUT_DEPTH; i++) {
+            if (current.equals(base)) {
+                return true;
+            }
+            if (names.containsKey(current)) {
+                return false;
+            }
+            var c = commit(current);
+            if (c.parents().size() != 1) {
+                return false;
+            }
+            if (c.generation() != GENERATION_UNKNOWN && target.generation() != GENERATION_UNKNOWN && c.generation() <= target.generation()) {
+                return false;
+            }
+            current = c.parents().getFirst();
+        }
+        return false;
+    }
+
+    public Optional<Description> describe(String commit) throws IOException {
+        var names = tagNames();
+        var exact = names.get(commit);
+        if (exact != null) {
+            return Optional.of(new Description(exact.name(), commit, 0));
+        }
+
+        Map<String, Integer> flags = new HashMap<>();
+        var list = new DateQueue();
+        var matches = new ArrayList<Candidate>();
+        int annotated = 0;
+        int seenCommits = 0;
+        String gaveUpOn = null;
+        flags.put(commit, SEEN);
+        list.add(commit(commit));
+        while (!list.isEmpty()) {
+            var c = list.poll();
+            seenCommits++;
+            var name = names.get(c.hash());
+            if (name != null) {
+                if (matches.size() < MAX_CANDIDATES) {
+                    var candidate = new Candidate(name, c.hash(), 1 << (matches.size() + 1), matches.size() + 1, seenCommits - 1);
+                    matches.add(candidate);
+                    flags.merge(c.hash(), candidate.flag(), (a, b) -> a | b);
+                    if (name.annotated()) {
+                        annotated++;
+                    }
+                } else {
+                    gaveUpOn = c.hash();
+                    break;
+                }
+            }
+            int cFlags = flags.getOrDefault(c.hash(), 0);
+            for (var candidate : matches) {
+                if ((cFlags & candidate.flag()) == 0) {
+                    candidate.depth++;
+                }
+            }
+            if (annotated > 0 && list.isEmpty()) {
+                break;
+            }
+            for (var parent : c.parents()) {
+                int pFlags = flags.getOrDefault(parent, 0);
+                if ((pFlags & SEEN) == 0) {
+                    list.add(commit(parent));
+                }
+                flags.put(parent, pFlags | cFlags);
+            }
+        }
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+        matches.sort(Comparator.<Candidate>comparingInt(m -> m.depth).thenComparingInt(Candidate::order));
+        var best = matches.getFirst();
+        if (gaveUpOn != null) {
+            list.add(commit(gaveUpOn));
+        }
+        finishDepthComputation(list, flags, best);
+        return Optional.of(new Description(best.name().name(), best.commit(), best.depth));
+    }
+
+    private void finishDepthComputation(DateQueue list, Map<String, Integer> flags, Candidate best) throws IOException {
+        while (!list.isEmpty()) {
+            var c = list.poll();
+            int cFlags = flags.getOrDefault(c.hash(), 0);
+            if ((cFlags & best.flag()) != 0) {
+                if (list.stream().allMatch(other -> (flags.getOrDefault(other.hash(), 0) & best.flag()) != 0)) {
+                    break;
+                }
+            } else {
+                best.depth++;
+            }
+            for (var parent : c.parents()) {
+                int pFlags = flags.getOrDefault(parent, 0);
+                if ((pFlags & SEEN) == 0) {
+                    list.add(commit(parent));
+                }
+                flags.put(parent, pFlags | cFlags);
+            }
+        }
+    }
+
+    Commit commit(String hash) throws IOException {
+        var cached = commits.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+        var id = HEX.parseHex(hash);
+        var graph = commitGraph();
+        var commit = graph == null ? null : graph.read(id);
+        if (commit == null) {
+            var object = readObject(id);
+            if (object.type() != OBJ_COMMIT) {
+                throw new IOException("Object " + hash + " is not a commit");
+            }
+            var parents = new ArrayList<String>();
+            long commitTime = 0;
+            for (var line : headerLines(object.data())) {
+                if (line.startsWith("parent ")) {
+                    parents.add(line.substring("parent ".length()));
+                } else if (line.startsWith("committer ")) {
+                    commitTime = identityTime(line);
+                }
+            }
+            commit = new Commit(hash, shallow.contains(hash) ? List.of() : List.copyOf(parents), commitTime, GENERATION_UNKNOWN);
+        }
+        commits.put(hash, commit);
+        return commit;
+    }
+
+    private @Nullable CommitGraph commitGraph() throws IOException {
+        if (!commitGraphLoaded) {
+            commitGraphLoaded = true;
+            commitGraph = useCommitGraph ? CommitGraph.open(objectDirectories.getFirst()) : null;
+        }
+        return commitGraph;
+    }
+
+    Map<String, TagName> tagNames() throws IOException {
+        if (tagNames != null) {
+            return tagNames;
+        }
+        var index = tagIndexFile == null ? null : TagIndex.load(tagIndexFile);
+        var refsKey = refsKey();
+        Map<String, TagIndex.Entry> entries;
+        if (index != null && index.refsKey().equals(refsKey)) {
+            entries = index.entries();
+        } else {
+            entries = new HashMap<>();
+            var previous = index == null ? Map.<String, TagIndex.Entry>of() : index.entries();
+            for (var ref : tagRefs().entrySet()) {
+                var known = previous.get(ref.getKey());
+                entries.put(ref.getKey(), known != null && known.hash().equals(ref.getValue()) ? known : readTag(ref.getKey(), ref.getValue()));
+            }
+            if (tagIndexFile != null && refsKey != null) {
+                new TagIndex(refsKey, entries).store(tagIndexFile);
+            }
+        }
+        Map<String, TagName> names = new HashMap<>();
+        for (var entry : new TreeMap<>(entries).entrySet()) {
+            var tag = entry.getValue();
+            var candidate = new TagName(entry.getKey().substring("refs/tags/".length()), tag.annotated(), tag.taggerTime());
+            var existing = names.get(tag.peeled());
+            if (existing == null || replaces(existing, candidate)) {
+                names.put(tag.peeled(), candidate);
+            }
+        }
+        tagNames = names;
+        return names;
+    }
+
+    private Map<String, String> tagRefs() throws IOException {
+        Map<String, String> tags = new HashMap<>();
+        packedRefs().forEach("refs/tags/", tags::put);
+        var tagsDir = commonDir.resolve("refs").resolve("tags");
+        if (Files.isDirectory(tagsDir)) {
+            try (Stream<Path> files = Files.walk(tagsDir)) {
+                for (var file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    var ref = "refs/tags/" + tagsDir.relativize(file).toString().replace(File.separatorChar, '/');
+                    var value = Files.readString(file).trim();
+                    if (value.length() == 40 && value.chars().allMatch(GitRepository::isHex)) {
+                        tags.put(ref, value);
+                    }
+                }
+            }
+        }
+        return tags;
+    }
+
+    private TagIndex.Entry readTag(String ref, String hash) throws IOException {
+        // A loose ref may have moved the tag since refs were packed, in which case the packed peel is stale
+        var packed = packedRefs();
+        var peeled = hash.equals(packed.get(ref)) ? packed.peeled(ref) : null;
+        var object = readObject(HEX.parseHex(hash));
+        if (object.type() != OBJ_TAG) {
+            return new TagIndex.Entry(hash, hash, false, 0);
+        }
+        var target = hash;
+        long taggerTime = 0;
+        var current = object;
+        boolean first = true;
+        while (current.type() == OBJ_TAG) {
+            for (var line : headerLines(current.data())) {
+                if (line.startsWith("object ")) {
+                    target = line.substring("object ".length());
+                } else if (first && line.startsWith("tagger ")) {
+                    taggerTime = identityTime(line);
+                }
+            }
+            first = false;
+            if (peeled != null) {
+                target = peeled;
+                break;
+            }
+            current = readObject(HEX.parseHex(target));
+        }
+        return new TagIndex.Entry(hash, target, true, taggerTime);
+    }
+
+    private static boolean replaces(TagName existing, TagName candidate) {
+        if (!existing.annotated() && candidate.annotated()) {
+            return true;
+        }
+        return existing.annotated() && candidate.annotated() && existing.taggerTime() < candidate.taggerTime();
+    }
+
+    RawObject readObject(byte[] id) throws IOException {
+        for (var pack : packs()) {
+            long offset = pack.find(id);
+            if (offset >= 0) {
+                return pack.read(offset, this);
+            }
+        }
+        var hex = HEX.formatHex(id);
+        for (var objects : objectDirectories) {
+            var loose = objects.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+            byte[] data;
+            try (InputStream in = new InflaterInputStream(Files.newInputStream(loose))) {
+                data = in.readAllBytes();
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            int space = indexOf(data, (byte) ' ', 0);
+            int nul = indexOf(data, (byte) 0, space);
+            if (space < 0 || nul < 0) {
+                throw new IOException("Corrupt loose object " + hex);
+            }
+            var type = switch (new String(data, 0, space, StandardCharsets.US_ASCII)) {
+                case "commit" -> OBJ_COMMIT;
+                case "tree" -> 2;
+                case "blob" -> 3;
+                case "tag" -> OBJ_TAG;
+                default -> throw new IOException("Unknown object type in " + hex);
+            };
+            var content = new byte[data.length - nul - 1];
+            System.arraycopy(data, nul + 1, content, 0, content.length);
+            return new RawObject(type, content);
+        }
+        throw new IOException("Object " + hex + " not found");
+    }
+
+    private List<PackFile> packs() throws IOException {
+        if (packs != null) {
+            return packs;
+        }
+        var found = new ArrayList<PackFile>();
+        for (var objects : objectDirectories) {
+            var packDir = objects.resolve("pack");
+            if (!Files.isDirectory(packDir)) {
+                continue;
+            }
+            try (var files = Files.list(packDir)) {
+                for (var idx : files.filter(p -> p.getFileName().toString().endsWith(".idx")).sorted().toList()) {
+                    found.add(PackFile.open(idx));
+                }
+            } catch (IOException | RuntimeException e) {
+                for (var pack : found) {
+                    pack.close();
+                }
+                throw e;
+            }
+        }
+        packs = found;
+        return found;
+    }
+
+    private @Nullable String tryResolveRef(String ref, int depth) throws IOException {
+        if (depth > 5) {
+            throw new IOException("Symbolic ref loop at " + ref);
+        }
+        var base = ref.equals("HEAD") || !ref.startsWith("refs/") ? gitDir : commonDir;
+        var file = base.resolve(ref);
+        if (Files.isRegularFile(file)) {
+            var value = Files.readString(file).trim();
+            if (value.startsWith("ref:")) {
+                return tryResolveRef(value.substring("ref:".length()).trim(), depth + 1);
+            }
+            return value;
+        }
+        return packedRefs().get(ref);
+    }
+
+    private String resolveRef(String ref, int depth) throws IOException {
+        var resolved = tryResolveRef(ref, depth);
+        if (resolved == null) {
+            throw new IOException("Unknown ref " + ref);
+        }
+        return resolved;
+    }
+
+    private PackedRefs packedRefs() throws IOException {
+        if (packedRefs == null) {
+            packedRefs = PackedRefs.open(commonDir.resolve("packed-refs"));
+        }
+        return packedRefs;
+    }
+
+    private static List<String> headerLines(byte[] data) {
+        var lines = new ArrayList<String>();
+        int start = 0;
+        while (start < data.length) {
+            int end = indexOf(data, (byte) '\n', start);
+            if (end < 0) {
+                end = data.length;
+            }
+            if (end == start) {
+                break;
+            }
+            lines.add(new String(data, start, end - start, StandardCharsets.UTF_8));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private static long identityTime(String line) {
+        var parts = line.substring(line.lastIndexOf('>') + 1).trim().split(" ");
+        try {
+            return Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte value, int from) {
+        for (int i = Math.max(from, 0); i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isHex(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Releases the mapped pack indexes and commit graph, so git is free to repack or rewrite them
+        if (commitGraph != null) {
+            commitGraph.close();
+        }
+        if (packs != null) {
+            for (var pack : packs) {
+                pack.close();
+            }
+        }
+    }
+
+    public record Description(String tag, String commit, int depth) {}
+
+    record RawObject(int type, byte[] data) {}
+
+    record Commit(String hash, List<String> parents, long commitTime, long generation) {}
+
+    record TagName(String name, boolean annotated, long taggerTime) {}
+
+    private static final class Candidate {
+        private final TagName name;
+        private final String commit;
+        private final int flag;
+        private final int order;
+        private int depth;
+
+        private Candidate(TagName name, String commit, int flag, int order, int depth) {
+            this.name = name;
+            this.commit = commit;
+            this.flag = flag;
+            this.order = order;
+            this.depth = depth;
+        }
+
+        TagName name() {
+            return name;
+        }
+
+        String commit() {
+            return commit;
+        }
+
+        int flag() {
+            return flag;
+        }
+
+        int order() {
+            return order;
+        }
+    }
+
+    private static final class DateQueue {
+        private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong((Entry e) -> -e.commit().commitTime()).thenComparingLong(Entry::sequence));
+        private long sequence;
+
+        void add(Commit commit) {
+            queue.add(new Entry(commit, sequence++));
+        }
+
+        Commit poll() {
+            return queue.remove().commit();
+        }
+
+        boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        Stream<Commit> stream() {
+            return queue.stream().map(Entry::commit);
+        }
+
+        private record Entry(Commit commit, long sequence) {}
+    }
+}
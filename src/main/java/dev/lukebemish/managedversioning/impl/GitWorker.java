@@ -0,0 +1,109 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public final class GitWorker implements AutoCloseable {
+    private static final Map<File, GitWorker> WORKERS = new HashMap<>();
+
+    private final Process process;
+    private final OutputStream input;
+    private final InputStream output;
+
+    private GitWorker(File workingDir) throws IOException {
+        this.process = new ProcessBuilder("git", "cat-file", "--batch")
+            .directory(workingDir)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        this.input = process.getOutputStream();
+        this.output = new BufferedInputStream(process.getInputStream());
+    }
+
+    public static GitWorker of(File workingDir) throws IOException {
+        var key = workingDir.getAbsoluteFile().toPath().normalize().toFile();
+        synchronized (WORKERS) {
+            var existing = WORKERS.get(key);
+            if (existing != null && existing.process.isAlive()) {
+                return existing;
+            }
+            var worker = new GitWorker(key);
+            WORKERS.put(key, worker);
+            return worker;
+        }
+    }
+
+    public static void closeAll() {
+        List<GitWorker> workers;
+        synchronized (WORKERS) {
+            workers = new ArrayList<>(WORKERS.values());
+            WORKERS.clear();
+        }
+        for (var worker : workers) {
+            worker.close();
+        }
+    }
+
+    public synchronized Commit commit(String revision) throws IOException {
+        if (revision.indexOf('\n') >= 0) {
+            throw new IOException("Invalid revision " + revision);
+        }
+        input.write((revision + "^{commit}\n").getBytes(StandardCharsets.UTF_8));
+        input.flush();
+        var header = readLine().split(" ");
+        if (header.length != 3 || !header[1].equals("commit")) {
+            throw new IOException("Unknown revision " + revision);
+        }
+        var contents = output.readNBytes(Integer.parseInt(header[2]) + 1);
+        for (var line : new String(contents, StandardCharsets.UTF_8).split("\n")) {
+            if (line.isEmpty()) {
+                break;
+            }
+            if (line.startsWith("author ")) {
+                var parts = line.split(" ");
+                return new Commit(header[0], Long.parseLong(parts[parts.length - 2]));
+            }
+        }
+        throw new IOException("Commit " + header[0] + " has no author");
+    }
+
+    private String readLine() throws IOException {
+        var line = new ByteArrayOutputStream();
+        int b;
+        while ((b = output.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("git cat-file exited unexpectedly");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        try {
+            input.close();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroy();
+            }
+        } catch (IOException ignored) {
+            process.destroy();
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public record Commit(String hash, long authorTime) {}
+}
@@ -0,0 +1,25 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+public abstract class GitWorkerService implements BuildService<BuildServiceParameters.None>, OperationCompletionListener, AutoCloseable {
+    public static final String NAME = "managedVersioningGitWorkers";
+
+    public static void register(Gradle gradle, BuildEventsListenerRegistry listeners) {
+        // Listening for task completion is what guarantees the service, and so close(), exists at the end of the build
+        listeners.onTaskCompletion(gradle.getSharedServices().registerIfAbsent(NAME, GitWorkerService.class, spec -> {}));
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {}
+
+    @Override
+    public void close() {
+        GitWorker.closeAll();
+    }
+}
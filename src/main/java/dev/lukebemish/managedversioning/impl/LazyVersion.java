@@ -0,0 +1,54 @@
+package dev.lukebemish.managedversioning.impl;
+
+import groovy.lang.GString;
+import org.gradle.api.provider.Provider;
+import org.jetbrains.annotations.Nullable;
+
+// Gradle and most plugins only ever call toString() on a project's version, so git is not consulted until something does.
+// Build scripts treat it like any other GString version: String methods, == and string templates resolve it first.
+public final class LazyVersion extends GString {
+    private static final String[] STRINGS = {"", ""};
+
+    LazyVersion(Provider<String> version) {
+        super(new Object[] {new Resolved(version)});
+    }
+
+    @Override
+    public String[] getStrings() {
+        return STRINGS;
+    }
+
+    @Override
+    public String toString() {
+        return getValue(0).toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CharSequence sequence && toString().equals(sequence.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    private static final class Resolved {
+        private final Provider<String> version;
+        private volatile @Nullable String resolved;
+
+        private Resolved(Provider<String> version) {
+            this.version = version;
+        }
+
+        @Override
+        public String toString() {
+            var value = resolved;
+            if (value == null) {
+                value = version.get();
+                resolved = value;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package dev.lukebemish.managedversioning.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+final class PackFile implements AutoCloseable {
+    private static final int IDX_MAGIC = 0xff744f63;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    private final MappedByteBuffer index;
+    private final FileChannel pack;
+    private final int count;
+    private final int namesStart;
+    private final int offsetsStart;
+    private final int largeOffsetsStart;
+
+    private PackFile(MappedByteBuffer index, FileChannel pack) throws IOException {
+        this.index = index;
+        this.pack = pack;
+        if (index.getInt(0) != IDX_MAGIC || index.getInt(4) != 2) {
+            throw new IOException("Unsupported pack index version");
+        }
+        this.count = index.getInt(8 + 255 * 4);
+        this.namesStart = 8 + 256 * 4;
+        this.offsetsStart = namesStart + count * 20 + count * 4;
+        this.largeOffsetsStart = offsetsStart + count * 4;
+    }
+
+    static PackFile open(Path idx) throws IOException {
+        var fileName = idx.getFileName().toString();
+        var packPath = idx.resolveSibling(fileName.substring(0, fileName.length() - ".idx".length()) + ".pack");
+        var index = MappedFiles.map(idx);
+        FileChannel pack = null;
+        try {
+            pack = FileChannel.open(packPath, StandardOpenOption.READ);
+            return new PackFile(index, pack);
+        } catch (IOException | RuntimeException e) {
+            MappedFiles.unmap(index);
+            if (pack != null) {
+                pack.close();
+            }
+            throw e;
+        }
+    }
+
+    long find(byte[] id) {
+        int first = id[0] & 0xff;
+        int low = first == 0 ? 0 : index.getInt(8 + (first - 1) * 4);
+        int high = index.getInt(8 + first * 4);
+        var candidate = new byte[20];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            index.get(namesStart + mid * 20, candidate);
+            int cmp = Arrays.compareUnsigned(candidate, id);
+            if (cmp == 0) {
+                return offset(mid);
+            } else if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return -1;
+    }
+
+    private long offset(int position) {
+        int offset = index.getInt(offsetsStart + position * 4);
+        if ((offset & 0x80000000) == 0) {
+            return offset;
+        }
+        return index.getLong(largeOffsetsStart + (offset & 0x7fffffff) * 8);
+    }
+
+    GitRepository.RawObject read(long offset, GitRepository repository) throws IOException {
+        var header = ByteBuffer.allocate(32);
+        pack.read(header, offset);
+        header.flip();
+        int c = header.get() & 0xff;
+        int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = header.get() & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+        if (type == OBJ_OFS_DELTA) {
+            c = header.get() & 0xff;
+            long distance = c & 0x7f;
+            while ((c & 0x80) != 0) {
+                c = header.get() & 0xff;
+                distance = ((distance + 1) << 7) | (c & 0x7f);
+            }
+            var base = read(offset - distance, repository);
+            var delta = inflate(offset + header.position(), size);
+            return new GitRepository.RawObject(base.type(), applyDelta(base.data(), delta));
+        } else if (type == OBJ_REF_DELTA) {
+            var baseId = new byte[20];
+            header.get(baseId);
+            var base = repository.readObject(baseId);
+            var delta = inflate(offset + header.position(), size);
+            return new GitRepository.RawObject(base.type(), applyDelta(base.data(), delta));
+        }
+        return new GitRepository.RawObject(type, inflate(offset + header.position(), size));
+    }
+
+    private byte[] inflate(long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Object too large to read in-process");
+        }
+        var inflater = new Inflater();
+        try {
+            var out = new byte[(int) size];
+            int produced = 0;
+            var input = ByteBuffer.allocate(8192);
+            while (produced < out.length) {
+                if (inflater.needsInput()) {
+                    input.clear();
+                    int read = pack.read(input, position);
+                    if (read <= 0) {
+                        throw new IOException("Unexpected end of pack file");
+                    }
+                    position += read;
+                    inflater.setInput(input.array(), 0, read);
+                }
+                int inflated = inflater.inflate(out, produced, out.length - produced);
+                produced += inflated;
+                if (inflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    throw new IOException("Corrupt pack entry");
+                }
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt pack entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] position = {0};
+        long baseSize = readVarInt(delta, position);
+        long resultSize = readVarInt(delta, position);
+        if (baseSize != base.length) {
+            throw new IOException("Delta base size mismatch");
+        }
+        var out = new ByteArrayOutputStream((int) resultSize);
+        int p = position[0];
+        while (p < delta.length) {
+            int op = delta[p++] & 0xff;
+            if ((op & 0x80) != 0) {
+                int copyOffset = 0;
+                int copySize = 0;
+                for (int i = 0; i < 4; i++) {
+                    if ((op & (1 << i)) != 0) {
+                        copyOffset |= (delta[p++] & 0xff) << (i * 8);
+                    }
+                }
+                for (int i = 0; i < 3; i++) {
+                    if ((op & (0x10 << i)) != 0) {
+                        copySize |= (delta[p++] & 0xff) << (i * 8);
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                out.write(base, copyOffset, copySize);
+            } else if (op != 0) {
+                out.write(delta, p, op);
+                p += op;
+            } else {
+                throw new IOException("Invalid delta instruction");
+            }
+        }
+        if (out.size() != resultSize) {
+            throw new IOException("Delta result size mismatch");
+        }
+        return out.toByteArray();
+    }
+
+    private static long readVarInt(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = data[position[0]++] & 0xff;
+            value |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        MappedFiles.unmap(index);
+        pack.close();
+    }
+}
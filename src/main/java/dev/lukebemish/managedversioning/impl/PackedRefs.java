@@ -0,0 +1,178 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+final class PackedRefs {
+    private static final int HASH_LENGTH = 40;
+    private static final String HEADER = "# pack-refs with:";
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private final boolean sorted;
+
+    private PackedRefs(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.end = buffer.limit();
+        int start = 0;
+        boolean sorted = false;
+        if (end > 0 && buffer.get(0) == '#') {
+            start = lineEnd(0);
+            var header = string(0, start);
+            sorted = header.startsWith(HEADER) && (" " + header.substring(HEADER.length()).trim() + " ").contains(" sorted ");
+            start = Math.min(start + 1, end);
+        }
+        this.start = start;
+        this.sorted = sorted;
+    }
+
+    static PackedRefs open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return new PackedRefs(ByteBuffer.allocate(0));
+        }
+        // Read onto the heap: git rewrites packed-refs in place of a lock file, which an open mapping blocks on Windows
+        return new PackedRefs(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    @Nullable String get(String ref) {
+        int record = find(ref);
+        return record < 0 ? null : string(record, record + HASH_LENGTH);
+    }
+
+    @Nullable String peeled(String ref) {
+        int record = find(ref);
+        if (record < 0) {
+            return null;
+        }
+        int next = lineEnd(record) + 1;
+        if (next < end && buffer.get(next) == '^') {
+            return string(next + 1, next + 1 + HASH_LENGTH);
+        }
+        return null;
+    }
+
+    boolean hasPrefix(String prefix) {
+        var key = prefix.getBytes(StandardCharsets.UTF_8);
+        int record = sorted ? lowerBound(key) : start;
+        for (; record < end; record = nextRecord(record)) {
+            if (isRecord(record) && startsWith(record, key)) {
+                return true;
+            } else if (sorted) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    void forEach(String prefix, BiConsumer<String, String> action) {
+        var key = prefix.getBytes(StandardCharsets.UTF_8);
+        for (int record = sorted ? lowerBound(key) : start; record < end; record = nextRecord(record)) {
+            if (isRecord(record) && startsWith(record, key)) {
+                action.accept(string(record + HASH_LENGTH + 1, lineEnd(record)), string(record, record + HASH_LENGTH));
+            } else if (sorted) {
+                return;
+            }
+        }
+    }
+
+    private int find(String ref) {
+        var key = ref.getBytes(StandardCharsets.UTF_8);
+        if (sorted) {
+            int record = lowerBound(key);
+            return record < end && compare(record, key) == 0 ? record : -1;
+        }
+        for (int record = start; record < end; record = nextRecord(record)) {
+            if (isRecord(record) && compare(record, key) == 0) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int record = recordStart(low + (high - low) / 2);
+            if (compare(record, key) < 0) {
+                low = nextRecord(record);
+            } else {
+                high = record;
+            }
+        }
+        return low;
+    }
+
+    private int recordStart(int position) {
+        int line = lineStart(position);
+        if (buffer.get(line) == '^' && line > start) {
+            line = lineStart(line - 1);
+        }
+        return line;
+    }
+
+    private int nextRecord(int record) {
+        int next = lineEnd(record) + 1;
+        if (next < end && buffer.get(next) == '^') {
+            next = lineEnd(next) + 1;
+        }
+        return Math.min(next, end);
+    }
+
+    private boolean isRecord(int record) {
+        return lineEnd(record) > record + HASH_LENGTH && buffer.get(record + HASH_LENGTH) == ' ';
+    }
+
+    private int compare(int record, byte[] key) {
+        int name = record + HASH_LENGTH + 1;
+        int nameEnd = lineEnd(record);
+        int length = Math.min(nameEnd - name, key.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = Integer.compare(buffer.get(name + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(nameEnd - name, key.length);
+    }
+
+    private boolean startsWith(int record, byte[] prefix) {
+        int name = record + HASH_LENGTH + 1;
+        if (lineEnd(record) - name < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(name + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lineStart(int position) {
+        while (position > start && buffer.get(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    private int lineEnd(int position) {
+        while (position < end && buffer.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private String string(int from, int to) {
+        var bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
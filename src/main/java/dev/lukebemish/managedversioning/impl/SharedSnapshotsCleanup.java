@@ -0,0 +1,13 @@
+package dev.lukebemish.managedversioning.impl;
+
+import dev.lukebemish.managedversioning.git.SharedSnapshots;
+import org.gradle.api.flow.FlowAction;
+import org.gradle.api.flow.FlowParameters;
+
+// Runs once the build is over, whether or not it succeeded, so the next build never sees this one's snapshots
+public abstract class SharedSnapshotsCleanup implements FlowAction<FlowParameters.None> {
+    @Override
+    public void execute(FlowParameters.None parameters) {
+        SharedSnapshots.clear();
+    }
+}
@@ -1,42 +1,77 @@
 package dev.lukebemish.managedversioning.impl;
 
+import dev.lukebemish.managedversioning.CollectTestDurationsTask;
+import dev.lukebemish.managedversioning.Constants;
 import dev.lukebemish.managedversioning.ManagedVersioningProjectExtension;
+import dev.lukebemish.managedversioning.RecordTestDurationsTask;
 import dev.lukebemish.managedversioning.RecordVersionTask;
 import dev.lukebemish.managedversioning.TagReleaseTask;
 import dev.lukebemish.managedversioning.UpdateVersioningTask;
 import org.gradle.api.IsolatedAction;
 import org.gradle.api.Project;
+import org.gradle.api.attributes.Usage;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.testing.Test;
 
 import java.util.List;
+import java.util.Map;
 
 public record SingleProjectAction(
     Provider<Directory> gitWorkingDir,
     Provider<RegularFile> versionFile,
     Provider<String> metadataVersion,
-    Provider<String> stagedChangesVersionSuffix,
-    Provider<String> unstagedChangesVersionSuffix,
-    Provider<List<String>> suffixParts
+    Provider<RegularFile> testDurationsFile,
+    List<String> projectPaths
 ) implements IsolatedAction<Project> {
+    private static final String TEST_DURATIONS_USAGE = "managed-versioning-test-durations";
 
     @Override
     public void execute(Project project) {
-        var generated = GeneratedVersionDetails.make(
-            project.getProviders(),
-            gitWorkingDir,
-            versionFile,
-            metadataVersion,
-            stagedChangesVersionSuffix,
-            unstagedChangesVersionSuffix,
-            suffixParts
-        );
+        var generated = GeneratedVersionDetails.shared(VersionDetailsService.lookup(project.getGradle()));
 
-        project.setVersion(generated.version().get());
+        project.setVersion(new LazyVersion(generated.version()));
 
         project.getExtensions().create("managedVersioning", ManagedVersioningProjectExtension.class, project, generated.gitTimestamp(), generated.gitHash());
 
+        // Each project sums up its own test results, and the root project collects them through project dependencies
+        var collectTestDurations = project.getTasks().register("collectTestDurations", CollectTestDurationsTask.class, task -> {
+            task.getProjectPath().set(project.getPath());
+            task.getTestResults().from(project.provider(() -> project.getTasks().withType(Test.class).stream()
+                .map(test -> test.getReports().getJunitXml().getOutputLocation().getLocationOnly().get())
+                .toList()));
+            task.getOutputFile().set(project.getLayout().getBuildDirectory().file("managedVersioning/testDurations.txt"));
+            task.mustRunAfter(project.getTasks().withType(Test.class));
+        });
+        var testDurationsUsage = project.getObjects().named(Usage.class, TEST_DURATIONS_USAGE);
+        project.getConfigurations().consumable("managedVersioningTestDurationsElements", configuration -> {
+            configuration.getAttributes().attribute(Usage.USAGE_ATTRIBUTE, testDurationsUsage);
+            configuration.getOutgoing().artifact(collectTestDurations.flatMap(CollectTestDurationsTask::getOutputFile));
+        });
+
+        int shardCount = project.getProviders().environmentVariable(Constants.SHARD_COUNT).map(TestShards::count).getOrElse(1);
+        if (shardCount > 1) {
+            var path = project.getPath();
+            var shards = TestShardsService.register(project.getGradle(), testDurationsFile, shardCount);
+            // Only read once tasks run, so every shard can reuse the same configuration cache entry
+            var shardIndex = project.getProviders().environmentVariable(Constants.SHARD_INDEX);
+            project.getTasks().withType(Test.class).configureEach(test -> {
+                test.usesService(shards);
+                // Gradle hides why an onlyIf failed, so an unusable index lets the task through to report it itself
+                test.onlyIf("Tests of " + path + " run on this shard", t -> {
+                    var index = shardIndex.getOrNull();
+                    return TestShards.indexProblem(index, shardCount) != null || shards.get().shard(path) == TestShards.index(index);
+                });
+                test.doFirst("Check shard index", t -> {
+                    var problem = TestShards.indexProblem(shardIndex.getOrNull(), shardCount);
+                    if (problem != null) {
+                        throw new RuntimeException(problem);
+                    }
+                });
+            });
+        }
+
         if (project.equals(project.getRootProject())) {
             var updateVersioning = project.getTasks().register("updateVersioning", UpdateVersioningTask.class, task -> {
                 task.getVersionFile().set(versionFile.get().getAsFile().getAbsolutePath());
@@ -63,6 +98,22 @@ public void execute(Project project) {
                 task.getVersion().set(toTagVersion);
                 task.getOutputFile().set(project.getLayout().getBuildDirectory().file("recordVersion.txt"));
             });
+            var testDurations = project.getConfigurations().dependencyScope("managedVersioningTestDurations", configuration -> {
+                for (var path : projectPaths) {
+                    if (!path.equals(project.getPath())) {
+                        configuration.getDependencies().add(project.getDependencies().project(Map.of("path", path)));
+                    }
+                }
+            });
+            var testDurationsFiles = project.getConfigurations().resolvable("managedVersioningTestDurationsFiles", configuration -> {
+                configuration.extendsFrom(testDurations.get());
+                configuration.getAttributes().attribute(Usage.USAGE_ATTRIBUTE, testDurationsUsage);
+            });
+            project.getTasks().register("recordTestDurations", RecordTestDurationsTask.class, task -> {
+                task.getProjectDurations().from(collectTestDurations.flatMap(CollectTestDurationsTask::getOutputFile));
+                task.getProjectDurations().from(testDurationsFiles);
+                task.getOutputFile().set(testDurationsFile);
+            });
         }
     }
 }
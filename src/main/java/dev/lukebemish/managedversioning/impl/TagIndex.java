@@ -0,0 +1,50 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+record TagIndex(String refsKey, Map<String, Entry> entries) {
+    private static final String REF_PREFIX = "ref.";
+    // Bumped whenever earlier indexes may hold wrong entries, such as peels taken from stale packed-refs
+    private static final String FORMAT = "2";
+
+    static @Nullable TagIndex load(Path file) {
+        var properties = VersionCache.load(file);
+        if (properties == null || !FORMAT.equals(properties.getProperty("format")) || properties.getProperty("refs") == null) {
+            return null;
+        }
+        Map<String, Entry> entries = new HashMap<>();
+        for (var name : properties.stringPropertyNames()) {
+            if (!name.startsWith(REF_PREFIX)) {
+                continue;
+            }
+            var parts = properties.getProperty(name).split(" ");
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                entries.put(name.substring(REF_PREFIX.length()), new Entry(parts[0], parts[1], parts[2].equals("1"), Long.parseLong(parts[3])));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return new TagIndex(properties.getProperty("refs"), entries);
+    }
+
+    void store(Path file) {
+        var properties = new Properties();
+        properties.setProperty("format", FORMAT);
+        properties.setProperty("refs", refsKey);
+        entries.forEach((ref, entry) -> properties.setProperty(
+            REF_PREFIX + ref,
+            entry.hash() + " " + entry.peeled() + " " + (entry.annotated() ? "1" : "0") + " " + entry.taggerTime()
+        ));
+        VersionCache.store(file, properties);
+    }
+
+    record Entry(String hash, String peeled, boolean annotated, long taggerTime) {}
+}
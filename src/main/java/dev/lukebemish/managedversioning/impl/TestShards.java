@@ -0,0 +1,82 @@
+package dev.lukebemish.managedversioning.impl;
+
+import dev.lukebemish.managedversioning.Constants;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class TestShards {
+    private TestShards() {}
+
+    static int count(String count) {
+        int value;
+        try {
+            value = Integer.parseInt(count.strip());
+        } catch (NumberFormatException e) {
+            value = 0;
+        }
+        if (value < 1) {
+            throw new IllegalArgumentException(Constants.SHARD_COUNT + " must be a whole number of at least 1, but is \"" + count + "\"");
+        }
+        return value;
+    }
+
+    static @Nullable String indexProblem(@Nullable String index, int count) {
+        if (index == null) {
+            return Constants.SHARD_COUNT + " is set to " + count + ", but " + Constants.SHARD_INDEX + " is not set";
+        }
+        int value;
+        try {
+            value = index(index);
+        } catch (NumberFormatException e) {
+            value = -1;
+        }
+        if (value < 0 || value >= count) {
+            return Constants.SHARD_INDEX + " must be between 0 and " + (count - 1) + ", but is \"" + index + "\"";
+        }
+        return null;
+    }
+
+    static int index(String index) {
+        return Integer.parseInt(index.strip());
+    }
+
+    static Map<String, Integer> assign(Map<String, Double> durations, int count) {
+        var entries = new ArrayList<>(durations.entrySet());
+        // Longest first onto the least loaded shard; ties break on path so the order of the file does not matter
+        entries.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+        var loads = new double[count];
+        var assigned = new HashMap<String, Integer>();
+        for (var entry : entries) {
+            int least = 0;
+            for (int i = 1; i < count; i++) {
+                if (loads[i] < loads[least]) {
+                    least = i;
+                }
+            }
+            loads[least] += entry.getValue();
+            assigned.put(entry.getKey(), least);
+        }
+        return assigned;
+    }
+
+    static Map<String, Double> parse(String text) {
+        var durations = new LinkedHashMap<String, Double>();
+        for (var line : text.split("\n")) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            if (space < 0) {
+                throw new IllegalArgumentException("Invalid test duration line: " + line);
+            }
+            durations.put(line.substring(0, space).strip(), Double.parseDouble(line.substring(space + 1)));
+        }
+        return durations;
+    }
+}
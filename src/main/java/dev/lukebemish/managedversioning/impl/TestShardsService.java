@@ -0,0 +1,66 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+
+// Every test task asks for its project's shard, but the durations file is parsed and balanced only once per build
+public abstract class TestShardsService implements BuildService<TestShardsService.Parameters> {
+    public static final String NAME = "managedVersioningTestShards";
+
+    private volatile @Nullable Map<String, Integer> assigned;
+
+    public interface Parameters extends BuildServiceParameters {
+        RegularFileProperty getDurationsFile();
+        Property<Integer> getCount();
+    }
+
+    static Provider<TestShardsService> register(Gradle gradle, Provider<RegularFile> durationsFile, int count) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, TestShardsService.class, spec -> {
+            spec.getParameters().getDurationsFile().set(durationsFile);
+            spec.getParameters().getCount().set(count);
+        });
+    }
+
+    // Every project computes the same assignment from the same durations, so no project needs to see another
+    int shard(String path) {
+        int count = getParameters().getCount().get();
+        var assigned = assigned(count);
+        var shard = assigned.get(path);
+        return shard != null ? shard : Math.floorMod(path.hashCode(), count);
+    }
+
+    private Map<String, Integer> assigned(int count) {
+        var assigned = this.assigned;
+        if (assigned == null) {
+            synchronized (this) {
+                assigned = this.assigned;
+                if (assigned == null) {
+                    assigned = TestShards.assign(durations(), count);
+                    this.assigned = assigned;
+                }
+            }
+        }
+        return assigned;
+    }
+
+    private Map<String, Double> durations() {
+        try {
+            return TestShards.parse(Files.readString(getParameters().getDurationsFile().get().getAsFile().toPath()));
+        } catch (NoSuchFileException e) {
+            return Map.of();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+public final class Timings {
+    // Value sources run in the daemon with no handle on the build, so timings are collected here, keyed by the build's
+    // root directory, until that build's TimingsService drains them
+    private static final Map<File, Queue<Timing>> TIMINGS = new ConcurrentHashMap<>();
+
+    private Timings() {}
+
+    public static Timer start(@Nullable File build, String operation, String detail) {
+        return new Timer(build, operation, detail);
+    }
+
+    public static <T> T time(@Nullable File build, String operation, String detail, Supplier<T> action) {
+        var timer = start(build, operation, detail);
+        try {
+            return action.get();
+        } finally {
+            timer.close();
+        }
+    }
+
+    static List<Timing> drain(File build) {
+        var timings = TIMINGS.remove(build.getAbsoluteFile());
+        return timings == null ? List.of() : List.copyOf(timings);
+    }
+
+    public static final class Timer implements AutoCloseable {
+        private final @Nullable File build;
+        private final String operation;
+        private final String detail;
+        private final long start = System.nanoTime();
+        private long bytes;
+        private @Nullable Boolean cacheHit;
+
+        private Timer(@Nullable File build, String operation, String detail) {
+            this.build = build == null ? null : build.getAbsoluteFile();
+            this.operation = operation;
+            this.detail = detail;
+        }
+
+        public void bytes(long bytes) {
+            this.bytes += bytes;
+        }
+
+        public void cacheHit(boolean cacheHit) {
+            this.cacheHit = cacheHit;
+        }
+
+        @Override
+        public void close() {
+            // Without a build there is no service to report to, so nothing is kept
+            if (build != null) {
+                TIMINGS.computeIfAbsent(build, b -> new ConcurrentLinkedQueue<>()).add(new Timing(operation, detail, System.nanoTime() - start, bytes, cacheHit));
+            }
+        }
+    }
+
+    public record Timing(String operation, String detail, long durationNanos, long bytes, @Nullable Boolean cacheHit) {}
+}
@@ -0,0 +1,85 @@
+package dev.lukebemish.managedversioning.impl;
+
+import groovy.json.JsonOutput;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+public abstract class TimingsService implements BuildService<TimingsService.Parameters>, OperationCompletionListener, AutoCloseable {
+    public static final String NAME = "managedVersioningTimings";
+    private static final Logger LOGGER = Logging.getLogger(TimingsService.class);
+
+    public static void register(Gradle gradle, BuildEventsListenerRegistry listeners, Directory rootDir) {
+        listeners.onTaskCompletion(gradle.getSharedServices().registerIfAbsent(NAME, TimingsService.class, spec -> {
+            spec.getParameters().getRootDir().set(rootDir);
+            spec.getParameters().getOutputFile().set(rootDir.file("build/managedVersioning/timings.json"));
+        }));
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {}
+
+    @Override
+    public void close() {
+        var timings = Timings.drain(getParameters().getRootDir().get().getAsFile());
+        if (LOGGER.isInfoEnabled() && !timings.isEmpty()) {
+            LOGGER.info(table(timings));
+        }
+        var file = getParameters().getOutputFile().get().getAsFile().toPath();
+        var json = new ArrayList<Object>(timings.size());
+        for (var timing : timings) {
+            var entry = new LinkedHashMap<String, Object>();
+            entry.put("operation", timing.operation());
+            entry.put("detail", timing.detail());
+            entry.put("durationNanos", timing.durationNanos());
+            entry.put("bytes", timing.bytes());
+            entry.put("cacheHit", timing.cacheHit());
+            json.add(entry);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, JsonOutput.prettyPrint(JsonOutput.toJson(json)));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write versioning timings to " + file, e);
+        }
+    }
+
+    private static String table(List<Timings.Timing> timings) {
+        var width = "operation".length();
+        for (var timing : timings) {
+            width = Math.max(width, timing.operation().length());
+        }
+        var table = new StringBuilder("Managed versioning timings:\n");
+        var format = "%-" + width + "s  %10s  %10s  %5s  %s%n";
+        table.append(String.format(Locale.ROOT, format, "operation", "ms", "bytes", "cache", "detail"));
+        for (var timing : timings) {
+            var cache = timing.cacheHit() == null ? "" : timing.cacheHit() ? "hit" : "miss";
+            table.append(String.format(Locale.ROOT, format, timing.operation(), millis(timing.durationNanos()), timing.bytes(), cache, timing.detail()));
+        }
+        return table.toString().stripTrailing();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+        DirectoryProperty getRootDir();
+        RegularFileProperty getOutputFile();
+    }
+}
@@ -0,0 +1,126 @@
+package dev.lukebemish.managedversioning.impl;
+
+import dev.lukebemish.managedversioning.git.VersionSnapshot;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+public final class VersionCache {
+    private final Path file;
+    private final Path lastFile;
+    private final Path tagsFile;
+
+    public VersionCache(File directory, File workingDir) {
+        var name = HexFormat.of().toHexDigits(workingDir.getAbsoluteFile().toPath().normalize().toString().hashCode());
+        this.file = directory.toPath().resolve("snapshot-" + name + ".properties");
+        this.lastFile = directory.toPath().resolve("last-" + name + ".properties");
+        this.tagsFile = directory.toPath().resolve("tags-" + name + ".properties");
+    }
+
+    public Path tagIndexFile() {
+        return tagsFile;
+    }
+
+    public @Nullable Entry read() {
+        var properties = load(file);
+        if (properties == null || Stream.of("key", "commit", "tagCommit", "tag").anyMatch(name -> properties.getProperty(name) == null)) {
+            return null;
+        }
+        try {
+            return new Entry(
+                properties.getProperty("key"),
+                properties.getProperty("commit"),
+                properties.getProperty("tagCommit"),
+                properties.getProperty("tag"),
+                Long.parseLong(properties.getProperty("timestamp"))
+            );
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void write(Entry entry) {
+        var properties = new Properties();
+        properties.setProperty("key", entry.key());
+        properties.setProperty("commit", entry.commit());
+        properties.setProperty("tagCommit", entry.tagCommit());
+        properties.setProperty("tag", entry.tag());
+        properties.setProperty("timestamp", Long.toString(entry.timestamp()));
+        store(file, properties);
+    }
+
+    public @Nullable VersionSnapshot readLast() {
+        var properties = load(lastFile);
+        if (properties == null) {
+            return null;
+        }
+        try {
+            return new VersionSnapshot(
+                properties.getProperty("commit"),
+                properties.getProperty("tagCommit"),
+                properties.getProperty("tagVersion"),
+                Long.parseLong(properties.getProperty("timestamp")),
+                Boolean.parseBoolean(properties.getProperty("stagedChanges")),
+                Boolean.parseBoolean(properties.getProperty("unstagedChanges"))
+            );
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void writeLast(VersionSnapshot snapshot) {
+        var properties = new Properties();
+        properties.setProperty("commit", snapshot.commit());
+        properties.setProperty("tagCommit", snapshot.tagCommit());
+        properties.setProperty("tagVersion", snapshot.tagVersion());
+        properties.setProperty("timestamp", Long.toString(snapshot.timestamp()));
+        properties.setProperty("stagedChanges", Boolean.toString(snapshot.stagedChanges()));
+        properties.setProperty("unstagedChanges", Boolean.toString(snapshot.unstagedChanges()));
+        store(lastFile, properties);
+    }
+
+    static @Nullable Properties load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (var reader = Files.newBufferedReader(path)) {
+            var properties = new Properties();
+            properties.load(reader);
+            return properties;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static void store(Path path, Properties properties) {
+        var directory = path.getParent();
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "snapshot", ".tmp");
+            try (var writer = Files.newBufferedWriter(temp)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) {
+            // A cache that cannot be written only costs the next build a recomputation
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Left for the next write to replace
+                }
+            }
+        }
+    }
+
+    public record Entry(String key, String commit, String tagCommit, String tag, long timestamp) {}
+}
@@ -0,0 +1,17 @@
+package dev.lukebemish.managedversioning.impl;
+
+import java.io.Serializable;
+
+public record VersionDetails(
+    String gitHash,
+    String tagHash,
+    String gitTimestamp,
+    String fromFile,
+    boolean stagedChanges,
+    boolean unstagedChanges,
+    String version
+) implements Serializable {
+    VersionDetails withVersion(String version) {
+        return new VersionDetails(gitHash, tagHash, gitTimestamp, fromFile, stagedChanges, unstagedChanges, version);
+    }
+}
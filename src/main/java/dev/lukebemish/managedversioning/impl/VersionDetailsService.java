@@ -0,0 +1,27 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+public abstract class VersionDetailsService implements BuildService<VersionDetailsService.Parameters> {
+    public static final String NAME = "managedVersioningDetails";
+
+    public static Provider<VersionDetailsService> register(Gradle gradle, GeneratedVersionDetails details) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, VersionDetailsService.class, spec -> {
+            spec.getParameters().getDetails().set(details.details());
+        });
+    }
+
+    public static Provider<VersionDetailsService> lookup(Gradle gradle) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, VersionDetailsService.class, spec -> {
+            throw new IllegalStateException("Version details have not been registered for this build");
+        });
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<VersionDetails> getDetails();
+    }
+}
@@ -0,0 +1,327 @@
+package dev.lukebemish.managedversioning.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public final class WorkTreeWatcher implements AutoCloseable {
+    private static final Map<Path, WorkTreeWatcher> WATCHERS = new HashMap<>();
+    private static final Set<Path> UNWATCHABLE = new HashSet<>();
+    private static final long IDLE_TIMEOUT = TimeUnit.HOURS.toNanos(1);
+
+    private final Path workTree;
+    private final Path gitDir;
+    private final Path commonDir;
+    private final Path index;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private long generation;
+    private boolean broken;
+    private long lastUsed;
+    private @Nullable Flags flags;
+    private List<String> ignoreRules;
+    private List<String> indexStamps = List.of();
+    private Set<Path> trackedDirectories = Set.of();
+
+    private WorkTreeWatcher(Path workTree, Path gitDir, Path commonDir) throws IOException {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.index = gitDir.resolve("index");
+        this.watchService = workTree.getFileSystem().newWatchService();
+        this.lastUsed = System.nanoTime();
+        try {
+            if (watchService.getClass().getSimpleName().startsWith("Polling")) {
+                // Polled watchers can lag by seconds, so a build could miss an edit made just before it
+                throw new UnsupportedOperationException("No native file watching on this platform");
+            }
+            this.ignoreRules = stamps(ignoreFiles());
+            refreshTrackedDirectories();
+            registerAll(List.of(workTree));
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    // Watchers live as long as the daemon's plugin classloader, so builds after the first can skip the scan
+    public static @Nullable WorkTreeWatcher of(GitRepository repository) {
+        var workTree = repository.workTree();
+        if (workTree == null) {
+            return null;
+        }
+        synchronized (WATCHERS) {
+            var now = System.nanoTime();
+            WATCHERS.values().removeIf(watcher -> {
+                if (now - watcher.lastUsed > IDLE_TIMEOUT) {
+                    watcher.close();
+                    return true;
+                }
+                return false;
+            });
+            var existing = WATCHERS.get(workTree);
+            if (existing != null && existing.gitDir.equals(repository.gitDir()) && !existing.broken) {
+                existing.lastUsed = now;
+                return existing;
+            }
+            if (UNWATCHABLE.contains(workTree)) {
+                return null;
+            }
+            try {
+                var watcher = new WorkTreeWatcher(workTree, repository.gitDir(), repository.commonDir());
+                WATCHERS.put(workTree, watcher);
+                if (existing != null) {
+                    existing.close();
+                }
+                return watcher;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Usually the inotify watch limit; retrying every build would only repeat the walk
+                UNWATCHABLE.add(workTree);
+                return null;
+            }
+        }
+    }
+
+    public synchronized @Nullable Flags current(String commit, boolean combined) {
+        drain();
+        var recorded = flags;
+        if (broken || recorded == null || recorded.mark().generation() != generation || !recorded.commit().equals(commit) || recorded.combined() != combined) {
+            return null;
+        }
+        return recorded.mark().stamps().equals(stamps(recorded.mark().files())) ? recorded : null;
+    }
+
+    // Anything that changes after the mark is taken invalidates what gets recorded against it
+    public synchronized Mark mark() {
+        drain();
+        // Besides the index, config and exclude files can change the answer without touching the work tree
+        var files = new ArrayList<>(GitConfig.files(gitDir, commonDir));
+        files.add(index);
+        try {
+            var ignoreFiles = ignoreFiles();
+            files.addAll(ignoreFiles);
+            var rules = stamps(ignoreFiles);
+            if (!rules.equals(ignoreRules)) {
+                // Newly un-ignored directories have never been watched
+                ignoreRules = rules;
+                registerAll(List.of(workTree));
+                generation++;
+                flags = null;
+            }
+            if (refreshTrackedDirectories()) {
+                generation++;
+                flags = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            broken = true;
+        }
+        return new Mark(generation, List.copyOf(files), stamps(files));
+    }
+
+    private List<Path> ignoreFiles() throws IOException {
+        return List.of(commonDir.resolve("info").resolve("exclude"), GitConfig.load(gitDir, commonDir).excludesFile());
+    }
+
+    // Files can be force-added under an ignored directory, and edits to them still count, so those directories must be watched too
+    private boolean refreshTrackedDirectories() throws IOException {
+        var stamps = stamps(List.of(index));
+        if (stamps.equals(indexStamps)) {
+            return false;
+        }
+        var gitIndex = GitIndex.open(index);
+        var tracked = new HashSet<Path>();
+        if (gitIndex != null) {
+            for (var entry : gitIndex.entries()) {
+                var parent = workTree.resolve(entry.path()).getParent();
+                while (parent != null && !parent.equals(workTree) && tracked.add(parent)) {
+                    parent = parent.getParent();
+                }
+            }
+        }
+        indexStamps = stamps;
+        trackedDirectories = tracked;
+        var watched = new HashSet<>(directories.values());
+        var unwatched = new ArrayList<Path>();
+        for (var directory : tracked) {
+            if (!watched.contains(directory) && watched.contains(directory.getParent())) {
+                unwatched.add(directory);
+            }
+        }
+        // Before the first walk there is nothing to add to; the walk itself keeps these directories
+        if (watched.isEmpty() || unwatched.isEmpty()) {
+            return false;
+        }
+        registerAll(unwatched);
+        return true;
+    }
+
+    public synchronized void record(Mark mark, String commit, boolean combined, boolean stagedChanges, boolean unstagedChanges) {
+        drain();
+        flags = !broken && mark.generation() == generation ? new Flags(commit, combined, stagedChanges, unstagedChanges, mark) : null;
+    }
+
+    private static List<String> stamps(List<Path> files) {
+        var stamps = new ArrayList<String>(files.size());
+        for (var file : files) {
+            try {
+                var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                stamps.add(attributes.lastModifiedTime() + ":" + attributes.size() + ":" + attributes.fileKey());
+            } catch (IOException e) {
+                stamps.add("");
+            }
+        }
+        return stamps;
+    }
+
+
+    private void drain() {
+        WatchKey key;
+        boolean changed = false;
+        var created = new ArrayList<Path>();
+        try {
+            while ((key = watchService.poll()) != null) {
+                var directory = directories.get(key);
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                        changed = true;
+                        created.add(workTree);
+                        continue;
+                    }
+                    var child = directory.resolve((Path) event.context());
+                    if (directory.equals(workTree) && child.getFileName().toString().equals(".git")) {
+                        continue;
+                    }
+                    changed = true;
+                    if (child.getFileName().toString().equals(".gitignore")) {
+                        created.add(workTree);
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        created.add(child);
+                    }
+                }
+                if (!key.reset()) {
+                    directories.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            broken = true;
+        }
+        if (!created.isEmpty() && !broken) {
+            try {
+                registerAll(created);
+            } catch (IOException | RuntimeException e) {
+                // Without a complete set of watches nothing can be trusted again
+                broken = true;
+            }
+        }
+        if (changed || broken) {
+            generation++;
+            flags = null;
+        }
+    }
+
+    private void registerAll(List<Path> roots) throws IOException {
+        // Walk one level at a time so that ignored directories (build outputs and the like) are never entered
+        var level = new ArrayList<Path>(roots.contains(workTree) ? List.of(workTree) : roots);
+        removeIgnored(level);
+        while (!level.isEmpty()) {
+            var next = new ArrayList<Path>();
+            for (var directory : level) {
+                try {
+                    var key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    directories.put(key, directory);
+                    try (var children = Files.list(directory)) {
+                        for (var child : (Iterable<Path>) children::iterator) {
+                            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS) && !(directory.equals(workTree) && child.getFileName().toString().equals(".git"))) {
+                                next.add(child);
+                            }
+                        }
+                    }
+                } catch (NoSuchFileException | NotDirectoryException e) {
+                    // Removed while walking; the deletion event has already invalidated the flags
+                }
+            }
+            removeIgnored(next);
+            level = next;
+        }
+    }
+
+    private void removeIgnored(List<Path> paths) throws IOException {
+        var ignored = ignored(paths.stream().filter(path -> !path.equals(workTree)).toList());
+        paths.removeIf(path -> ignored.contains(path) && !trackedDirectories.contains(path));
+    }
+
+    private Set<Path> ignored(List<Path> paths) throws IOException {
+        if (paths.isEmpty()) {
+            return Set.of();
+        }
+        var process = new ProcessBuilder("git", "check-ignore", "--stdin", "-z")
+            .directory(workTree.toFile())
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        var writer = Thread.ofVirtual().start(() -> {
+            try (var input = process.getOutputStream()) {
+                for (var path : paths) {
+                    input.write(workTree.relativize(path).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+                    input.write(0);
+                }
+            } catch (IOException ignored) {
+                // The process exiting early shows up in its exit code
+            }
+        });
+        byte[] output;
+        try (var stream = process.getInputStream()) {
+            output = stream.readAllBytes();
+        }
+        try {
+            writer.join();
+            int exit = process.waitFor();
+            if (exit > 1) {
+                throw new IOException("`git check-ignore` failed with exit code " + exit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new IOException(e);
+        }
+        var ignored = new HashSet<Path>();
+        int start = 0;
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] == 0) {
+                ignored.add(workTree.resolve(new String(output, start, i - start, StandardCharsets.UTF_8)));
+                start = i + 1;
+            }
+        }
+        return ignored;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+            // Nothing useful can be done about a watch service that fails to close
+        }
+    }
+
+    public record Mark(long generation, List<Path> files, List<String> stamps) {}
+
+    public record Flags(String commit, boolean combined, boolean stagedChanges, boolean unstagedChanges, Mark mark) {}
+}